@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures native interface initialization (embedded library extraction and loading) in a fresh JVM per sample.
+ *
+ * <p>Located in library package in order to reach the (package-private) native interface. Requires a library JAR
+ * embedding the native library for the running host.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class NativeLibLoaderBenchmark {
+    @Benchmark
+    public void coldInit() throws IOException {
+        NativeSerialPort.initNativeInterface();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.benchmarks;
+
+import com.github.ljbo82.jserial.LoopbackTransport;
+import com.github.ljbo82.jserial.SerialPort;
+import com.github.ljbo82.jserial.comm.LineCodec;
+import com.github.ljbo82.jserial.comm.LineConnection;
+import com.github.ljbo82.jserial.comm.PacketBuffer;
+import com.github.ljbo82.jserial.comm.PacketConnection;
+import com.github.ljbo82.jserial.comm.SerialPortConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-message cost (one write plus one read) of {@link LineConnection}, {@link LineCodec} and
+ * {@link PacketConnection} (plain and pooled-buffer calls) over an in-memory loopback transport. Run with {@code -prof gc} to get the allocation rate per message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConnectionBenchmark {
+    @Param({"16", "200"})
+    public int messageLen;
+
+    private SerialPortConnection writeSide;
+    private SerialPortConnection readSide;
+
+    private LineConnection lineWriter;
+    private LineConnection lineReader;
+    private String line;
+
+    private LineCodec codecWriter;
+    private LineCodec codecReader;
+
+    private PacketConnection packetWriter;
+    private PacketConnection packetReader;
+    private byte[] packet;
+    private ByteBuffer packetBuffer;
+    private PacketBuffer.Pool packetPool;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        LoopbackTransport[] pair = LoopbackTransport.createPair(false);
+        writeSide = new SerialPortConnection(new SerialPort("loopback-a", pair[0]));
+        readSide = new SerialPortConnection(new SerialPort("loopback-b", pair[1]));
+
+        lineWriter = new LineConnection(writeSide);
+        lineReader = new LineConnection(readSide);
+        char[] chars = new char[messageLen];
+        Arrays.fill(chars, 'x');
+        line = new String(chars);
+
+        codecWriter = new LineCodec(writeSide);
+        codecReader = new LineCodec(readSide);
+
+        packetWriter = new PacketConnection(writeSide);
+        packetReader = new PacketConnection(readSide);
+        packet = new byte[messageLen];
+        packetBuffer = ByteBuffer.wrap(packet);
+        packetPool = new PacketBuffer.Pool(4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writeSide.close();
+        readSide.close();
+    }
+
+    @Benchmark
+    public String line() throws IOException {
+        lineWriter.write(line);
+        return lineReader.read();
+    }
+
+    @Benchmark
+    public CharSequence lineCodec() throws IOException {
+        codecWriter.write(line);
+        codecReader.next();
+        return codecReader.line();
+    }
+
+    @Benchmark
+    public byte[] packet() throws IOException {
+        packetWriter.write(packet);
+        return packetReader.read();
+    }
+
+    @Benchmark
+    public int packetPooled() throws IOException {
+        packetBuffer.clear();
+        packetWriter.write(packetBuffer);
+
+        PacketBuffer received = packetReader.read(packetPool);
+        try {
+            return received.length();
+        } finally {
+            received.release();
+        }
+    }
+}
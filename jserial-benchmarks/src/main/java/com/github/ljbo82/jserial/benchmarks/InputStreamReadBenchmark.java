@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.benchmarks;
+
+import com.github.ljbo82.jserial.LoopbackTransport;
+import com.github.ljbo82.jserial.SerialPort;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares single-byte and bulk reads through the port input stream, with and without read-ahead buffering. Ports use
+ * an in-memory loopback transport, so results show the per-byte cost of the stream itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InputStreamReadBenchmark {
+    private static final int CHUNK_LEN = 1024;
+
+    @Param({"0", "1024"})
+    public int inputBufferSize;
+
+    private final byte[] chunk = new byte[CHUNK_LEN];
+    private final byte[] readBuffer = new byte[CHUNK_LEN];
+
+    private LoopbackTransport writeSide;
+    private SerialPort port;
+    private InputStream is;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        LoopbackTransport[] pair = LoopbackTransport.createPair(false);
+        writeSide = pair[1];
+
+        port = new SerialPort("loopback", pair[0]);
+        port.setReadTimeout(1000);
+        port.setInputBufferSize(inputBufferSize);
+        is = port.getInputStream();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        port.close();
+        writeSide.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_LEN)
+    public int singleByteReads() throws IOException {
+        writeSide.write(chunk, 0, CHUNK_LEN);
+
+        int sum = 0;
+        for (int i = 0; i < CHUNK_LEN; i++)
+            sum += is.read();
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_LEN)
+    public int bulkReads() throws IOException {
+        writeSide.write(chunk, 0, CHUNK_LEN);
+
+        int total = 0;
+        while (total < CHUNK_LEN)
+            total += is.read(readBuffer, total, CHUNK_LEN - total);
+
+        return total;
+    }
+}
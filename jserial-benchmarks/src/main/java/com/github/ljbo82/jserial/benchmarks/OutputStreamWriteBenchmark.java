@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.benchmarks;
+
+import com.github.ljbo82.jserial.FlushPolicy;
+import com.github.ljbo82.jserial.LoopbackTransport;
+import com.github.ljbo82.jserial.SerialPort;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of small writes through the port output stream for different flush policies. Port uses an
+ * in-memory loopback transport whose peer is closed, so written data is discarded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OutputStreamWriteBenchmark {
+    private static final int POLICY_BUFFER_SIZE = 4096;
+
+    @Param({"1", "16"})
+    public int writeLen;
+
+    @Param({"unbuffered", "explicit", "sizeThreshold"})
+    public String flushPolicy;
+
+    private byte[] data;
+    private SerialPort port;
+    private OutputStream os;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        LoopbackTransport[] pair = LoopbackTransport.createPair(false);
+        pair[1].close(); // Data sink
+
+        port = new SerialPort("loopback", pair[0]);
+        switch (flushPolicy) {
+            case "unbuffered":
+                port.setFlushPolicy(FlushPolicy.unbuffered());
+                break;
+
+            case "explicit":
+                port.setFlushPolicy(FlushPolicy.explicit(POLICY_BUFFER_SIZE));
+                break;
+
+            case "sizeThreshold":
+                port.setFlushPolicy(FlushPolicy.sizeThreshold(POLICY_BUFFER_SIZE, POLICY_BUFFER_SIZE / 2));
+                break;
+
+            default:
+                throw new IllegalArgumentException(String.format("Unknown flush policy: %s", flushPolicy));
+        }
+
+        data = new byte[writeLen];
+        os = port.getOutputStream();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        port.close();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        os.write(data, 0, writeLen);
+    }
+}
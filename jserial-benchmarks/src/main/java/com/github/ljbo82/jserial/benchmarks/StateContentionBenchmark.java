@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.benchmarks;
+
+import com.github.ljbo82.jserial.LoopbackTransport;
+import com.github.ljbo82.jserial.SerialPort;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compares the cost of reading port state while a reader is parked inside a (simulated) blocking native read, using
+ * the former two-permit semaphore scheme against the current split-lock/volatile-snapshot scheme.
+ *
+ * <p>The blocking read is simulated by parking for {@code readParkMicros} while holding the reader guard, so no serial
+ * hardware is required. The {@code port} group measures an actual {@link SerialPort} over an in-memory loopback
+ * transport, whose reader waits (for one millisecond) for data which never arrives.</p>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateContentionBenchmark {
+
+    private static final class Config {
+        final int baud;
+
+        Config(int baud) {
+            this.baud = baud;
+        }
+    }
+
+    @State(Scope.Group)
+    public static class SemaphoreGuarded {
+        @Param({"1000"})
+        public long readParkMicros;
+
+        final Semaphore semaphore = new Semaphore(2);
+        int baud = 9600;
+
+        int getBaud() throws InterruptedException {
+            semaphore.acquire(2);
+            int result = baud;
+            semaphore.release(2);
+            return result;
+        }
+
+        void read() throws InterruptedException {
+            semaphore.acquire();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(readParkMicros));
+            semaphore.release();
+        }
+    }
+
+    @State(Scope.Group)
+    public static class SnapshotGuarded {
+        @Param({"1000"})
+        public long readParkMicros;
+
+        final ReentrantLock readLock = new ReentrantLock();
+        volatile Config config = new Config(9600);
+
+        int getBaud() {
+            return config.baud;
+        }
+
+        void read() {
+            readLock.lock();
+            try {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(readParkMicros));
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+
+    @State(Scope.Group)
+    public static class PortGuarded {
+        LoopbackTransport[] pair;
+        SerialPort port;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            pair = LoopbackTransport.createPair(false);
+            port = new SerialPort("loopback", pair[0]);
+            port.setReadTimeout(1);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            port.close();
+            pair[1].close();
+        }
+
+        void read() throws IOException {
+            try {
+                port.getInputStream().read();
+            } catch (SerialPort.TimeoutException ignored) {
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("semaphore")
+    @GroupThreads(1)
+    public void semaphoreReader(SemaphoreGuarded state) throws InterruptedException {
+        state.read();
+    }
+
+    @Benchmark
+    @Group("semaphore")
+    @GroupThreads(2)
+    public int semaphoreGetter(SemaphoreGuarded state) throws InterruptedException {
+        return state.getBaud();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public void snapshotReader(SnapshotGuarded state) {
+        state.read();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(2)
+    public int snapshotGetter(SnapshotGuarded state) {
+        return state.getBaud();
+    }
+
+    @Benchmark
+    @Group("port")
+    @GroupThreads(1)
+    public void portReader(PortGuarded state) throws IOException {
+        state.read();
+    }
+
+    @Benchmark
+    @Group("port")
+    @GroupThreads(2)
+    public int portGetter(PortGuarded state) {
+        return state.port.getBaud();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.benchmarks;
+
+import com.github.ljbo82.jserial.LoopbackTransport;
+import com.github.ljbo82.jserial.SerialPort;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes for {@code readers} virtual threads, spread over {@code portPairs} in-memory loopback port
+ * pairs, to receive one byte each (Java 21+).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadReadersBenchmark {
+    private static final long READ_TIMEOUT_MILLIS = 10000;
+
+    @Param({"10000"})
+    public int readers;
+
+    @Param({"4"})
+    public int portPairs;
+
+    private final List<SerialPort> readPorts  = new ArrayList<>();
+    private final List<SerialPort> writePorts = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        for (int i = 0; i < portPairs; i++) {
+            LoopbackTransport[] pair = LoopbackTransport.createPair(false);
+
+            SerialPort readPort = new SerialPort(String.format("loopback-%d-r", i), pair[0]);
+            readPort.setReadTimeout(READ_TIMEOUT_MILLIS);
+            readPorts.add(readPort);
+            writePorts.add(new SerialPort(String.format("loopback-%d-w", i), pair[1]));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (SerialPort port : readPorts)
+            port.close();
+
+        for (SerialPort port : writePorts)
+            port.close();
+    }
+
+    @Benchmark
+    public long virtualReaders() throws Exception {
+        CountDownLatch started = new CountDownLatch(readers);
+        CountDownLatch done = new CountDownLatch(readers);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < readers; i++) {
+                InputStream is = readPorts.get(i % readPorts.size()).getInputStream();
+                executor.execute(() -> {
+                    started.countDown();
+                    try {
+                        if (is.read() >= 0)
+                            done.countDown();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+
+            started.await();
+
+            // Each read side receives as many bytes as readers attached to it
+            for (int i = 0; i < readers; i++) {
+                writePorts.get(i % writePorts.size()).getOutputStream().write(i);
+            }
+
+            if (!done.await(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                throw new IllegalStateException("Readers did not finish in time");
+        }
+
+        return done.getCount();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+/**
+ * Controls how data written to a serial port output stream is coalesced before being sent to the port.
+ *
+ * <p>Buffered data is always sent when the stream is flushed, when the buffer cannot hold incoming data, or when the
+ * port is closed. Subclasses may request earlier writes through {@link #shouldFlush(int)}.</p>
+ */
+public abstract class FlushPolicy {
+
+    // region STATIC SCOPE
+    // =================================================================================================================
+    private static final FlushPolicy UNBUFFERED = new FlushPolicy(0, 0) {
+        @Override
+        public boolean shouldFlush(int bufferedLen) {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "UNBUFFERED";
+        }
+    };
+
+    /** Returns a policy which writes every chunk straight to the port (no coalescing). */
+    public static FlushPolicy unbuffered() {
+        return UNBUFFERED;
+    }
+
+    /** Returns a policy which sends buffered data only on explicit flush (or when the buffer is full). */
+    public static FlushPolicy explicit(int bufferSize) {
+        return new FlushPolicy(bufferSize, 0) {
+            @Override
+            public boolean shouldFlush(int bufferedLen) {
+                return false;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("EXPLICIT(bufferSize: %d)", getBufferSize());
+            }
+        };
+    }
+
+    /** Returns a policy which sends buffered data as soon as at least {@code threshold} bytes are buffered. */
+    public static FlushPolicy sizeThreshold(int bufferSize, int threshold) {
+        if (threshold <= 0 || threshold > bufferSize)
+            throw new IllegalArgumentException("Invalid threshold");
+
+        return new FlushPolicy(bufferSize, 0) {
+            @Override
+            public boolean shouldFlush(int bufferedLen) {
+                return bufferedLen >= threshold;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("SIZE_THRESHOLD(bufferSize: %d, threshold: %d)", getBufferSize(), threshold);
+            }
+        };
+    }
+
+    /** Returns a policy which sends buffered data at most {@code maxLingerMillis} after it was first buffered. */
+    public static FlushPolicy maxLinger(int bufferSize, long maxLingerMillis) {
+        if (maxLingerMillis <= 0)
+            throw new IllegalArgumentException("Invalid linger time");
+
+        return new FlushPolicy(bufferSize, maxLingerMillis) {
+            @Override
+            public boolean shouldFlush(int bufferedLen) {
+                return false;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("MAX_LINGER(bufferSize: %d, maxLingerMillis: %d)", getBufferSize(), getMaxLingerMillis());
+            }
+        };
+    }
+    // =================================================================================================================
+    // endregion
+
+    private final int bufferSize;
+    private final long maxLingerMillis;
+
+    /**
+     * @param bufferSize      coalescing buffer capacity in bytes (zero disables buffering).
+     * @param maxLingerMillis maximum time buffered data may wait before being sent (zero for no limit).
+     */
+    protected FlushPolicy(int bufferSize, long maxLingerMillis) {
+        if (bufferSize < 0)
+            throw new IllegalArgumentException("Negative buffer size");
+
+        if (maxLingerMillis < 0)
+            throw new IllegalArgumentException("Negative linger time");
+
+        this.bufferSize = bufferSize;
+        this.maxLingerMillis = maxLingerMillis;
+    }
+
+    public final int getBufferSize() {
+        return bufferSize;
+    }
+
+    public final long getMaxLingerMillis() {
+        return maxLingerMillis;
+    }
+
+    /**
+     * Called after data was appended to the buffer.
+     *
+     * @param bufferedLen number of bytes currently buffered.
+     * @return whether buffered data shall be sent to the port right away.
+     */
+    public abstract boolean shouldFlush(int bufferedLen);
+}
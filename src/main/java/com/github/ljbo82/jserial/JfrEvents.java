@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+/**
+ * Emits Java Flight Recorder events for port operations.
+ *
+ * <p>Usage: {@code Object event = JfrEvents.begin(type)} before the operation, followed by a {@code commit()} call.
+ * This implementation does nothing: events are emitted by the version of this class built for Java 11+ (multi-release
+ * JAR).</p>
+ */
+final class JfrEvents {
+    private JfrEvents() {}
+
+    /**
+     * Starts timing an event.
+     *
+     * @return event handle, or {@code null} if event is not being recorded.
+     */
+    static Object begin(JfrEventType type) {
+        return null;
+    }
+
+    /**
+     * Commits an event started by {@link #begin(JfrEventType)}.
+     *
+     * @param bytes number of bytes transferred (-1 meaning end-of-stream).
+     * @param error error raised by the operation, if any.
+     */
+    @SuppressWarnings("unused")
+    static void commit(Object event, String portName, long bytes, Throwable error) {}
+
+    /** Commits an event whose deadline-based operation timed out. */
+    @SuppressWarnings("unused")
+    static void commitTimeout(Object event, String portName) {}
+
+    /** Commits a delimited read event whose delimiter was not found within the length limit. */
+    @SuppressWarnings("unused")
+    static void commitLimitExceeded(Object event, String portName) {}
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import com.github.ljbo82.jserial.SerialPort.DataBits;
+import com.github.ljbo82.jserial.SerialPort.Parity;
+import com.github.ljbo82.jserial.SerialPort.StopBits;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory transport connected to a peer transport, as two ports linked by a null-modem cable.
+ *
+ * <p>When timing is emulated, writes take as long as the transmission of the data over a line using the configuration
+ * of the writing side (start bit, data bits, parity and stop bits at the configured baud rate), and data reaches the
+ * peer progressively. Otherwise, data is transferred as fast as memory allows.</p>
+ *
+ * <p>Like a real line, data written while the peer is closed is lost.</p>
+ */
+public final class LoopbackTransport implements SerialTransport {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    private static final int      DEFAULT_BAUD      = 115200;
+    private static final DataBits DEFAULT_DATA_BITS = DataBits.DATA_BITS_8;
+    private static final Parity   DEFAULT_PARITY    = Parity.NONE;
+    private static final StopBits DEFAULT_STOP_BITS = StopBits.STOP_BITS_1;
+
+    /** Size of the receive buffer of each side (writers block while it is full). */
+    private static final int RX_BUFFER_SIZE = 4096;
+
+    /** Max transmission time of a piece of data delivered at once to the peer when timing is emulated. */
+    private static final long TIMING_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Creates a pair of connected transports, initially configured as {@value #DEFAULT_BAUD} 8N1.
+     *
+     * @param emulateTiming whether transmission time is emulated.
+     */
+    public static LoopbackTransport[] createPair(boolean emulateTiming) {
+        Pipe a = new Pipe();
+        Pipe b = new Pipe();
+
+        return new LoopbackTransport[] {
+            new LoopbackTransport(a, b, emulateTiming),
+            new LoopbackTransport(b, a, emulateTiming)
+        };
+    }
+
+    /** Bounded byte queue carrying data in one direction. */
+    private static final class Pipe {
+        private final byte[] buffer = new byte[RX_BUFFER_SIZE];
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+
+        private int head;
+        private int count;
+        private boolean closed; // Receiving side was closed
+
+        int read(byte[] b, int off, int len, long timeoutMillis) throws IOException {
+            lock.lock();
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                while (count == 0 && !closed) {
+                    if (remaining <= 0)
+                        return 0;
+
+                    remaining = notEmpty.awaitNanos(remaining);
+                }
+
+                if (count == 0)
+                    return 0;
+
+                int n = Math.min(len, count);
+                int firstLen = Math.min(n, buffer.length - head);
+                System.arraycopy(buffer, head, b, off, firstLen);
+                System.arraycopy(buffer, 0, b, off + firstLen, n - firstLen);
+                head = (head + n) % buffer.length;
+                count -= n;
+
+                notFull.signalAll();
+                return n;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                while (len > 0) {
+                    while (count == buffer.length && !closed)
+                        notFull.await();
+
+                    if (closed)
+                        return; // Nobody is listening
+
+                    int tail = (head + count) % buffer.length;
+                    int n = Math.min(len, Math.min(buffer.length - count, buffer.length - tail));
+                    System.arraycopy(b, off, buffer, tail, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+
+                    notEmpty.signalAll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                head = 0;
+                count = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                count = 0;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    // =================================================================================================================
+    // endregion
+
+    private final Pipe rx;
+    private final Pipe tx;
+    private final boolean emulateTiming;
+
+    // Written by config() (never concurrent with other calls), read by writers
+    private volatile int baud = DEFAULT_BAUD;
+    private volatile DataBits dataBits = DEFAULT_DATA_BITS;
+    private volatile Parity parity = DEFAULT_PARITY;
+    private volatile StopBits stopBits = DEFAULT_STOP_BITS;
+
+    private LoopbackTransport(Pipe rx, Pipe tx, boolean emulateTiming) {
+        this.rx = rx;
+        this.tx = tx;
+        this.emulateTiming = emulateTiming;
+    }
+
+    public boolean isTimingEmulated() {
+        return emulateTiming;
+    }
+
+    /** Returns the time taken to transmit a character with current configuration. */
+    private double getCharNanos() {
+        double bits = 1 + dataBits.nativeCode + (parity == Parity.NONE ? 0 : 1) + (stopBits == StopBits.STOP_BITS_1_5 ? 1.5 : stopBits.nativeCode);
+        return bits * TimeUnit.SECONDS.toNanos(1) / baud;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len, long timeoutMillis) throws IOException {
+        return rx.read(b, off, len, timeoutMillis);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!emulateTiming) {
+            tx.write(b, off, len);
+            return;
+        }
+
+        double charNanos = getCharNanos();
+        int pieceLen = (int) Math.max(1, TIMING_SLICE_NANOS / charNanos);
+        long start = System.nanoTime();
+        int sent = 0;
+
+        while (sent < len) {
+            int n = Math.min(pieceLen, len - sent);
+
+            // Piece reaches the peer once its last character is transmitted
+            long deadline = start + (long) ((sent + n) * charNanos);
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            tx.write(b, off + sent, n);
+            sent += n;
+        }
+    }
+
+    /** Does nothing: writes return only after data is transmitted. */
+    @Override
+    public void flush() {}
+
+    @Override
+    public void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) {
+        if (baud <= 0)
+            throw new IllegalArgumentException("Invalid baud");
+
+        if (dataBits == null || parity == null || stopBits == null)
+            throw new NullPointerException();
+
+        this.baud = baud;
+        this.dataBits = dataBits;
+        this.parity = parity;
+        this.stopBits = stopBits;
+    }
+
+    @Override
+    public int getBaud() {
+        return baud;
+    }
+
+    @Override
+    public DataBits getDataBits() {
+        return dataBits;
+    }
+
+    @Override
+    public Parity getParity() {
+        return parity;
+    }
+
+    @Override
+    public StopBits getStopBits() {
+        return stopBits;
+    }
+
+    @Override
+    public void purgeRX() {
+        rx.clear();
+    }
+
+    /** Does nothing: written data is never held by this side. */
+    @Override
+    public void purgeTX() {}
+
+    @Override
+    public void close() {
+        rx.close();
+    }
+}
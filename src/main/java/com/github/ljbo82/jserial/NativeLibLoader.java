@@ -16,99 +16,260 @@
 package com.github.ljbo82.jserial;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 
+/**
+ * Loads native libraries embedded into the JAR.
+ *
+ * <p>Libraries are extracted into a persistent cache directory (see {@link #CACHE_DIR_PROPERTY}), under a
+ * sub-directory named after their content checksum, so later JVMs (concurrent ones included) reuse an already extracted
+ * and verified copy instead of extracting it again. Cache directories must be private to the current user (they are
+ * created with owner-only permissions and rejected if owned by someone else or writable by group/others), so no other
+ * user can replace a library before it is loaded. If the default cache directory cannot be used (e.g. read-only or
+ * missing home directory), libraries are extracted into a temporary directory private to the current JVM. Extraction can be skipped altogether by pointing
+ * {@link #LIB_PATH_PROPERTY} to preinstalled libraries.</p>
+ *
+ * <p>Inside a GraalVM native executable, libraries shipped alongside the executable (or found in
+ * {@code java.library.path}) are loaded as they are, and embedded ones (included through the native-image resource
+ * metadata) are extracted only if no such library is found.</p>
+ */
 abstract class NativeLibLoader {
 
     // region STATIC SCOPE
     // =================================================================================================================
-    private static InputStream getEmbeddedResource(String embeddedPath) {
-        return NativeLibLoader.class.getResourceAsStream(embeddedPath);
+    /** System property holding the path(s) of preinstalled libraries (separated by {@link File#pathSeparator}). */
+    static final String LIB_PATH_PROPERTY = "jserial.lib.path";
+
+    /** System property holding the cache directory (defaults to a directory named after the loader in ~/.cache). */
+    static final String CACHE_DIR_PROPERTY = "jserial.lib.cacheDir";
+
+    private static final String LOCK_FILE_NAME = ".lock";
+
+    private static final String DEFAULT_CACHE_DIR_NAME = "jserial";
+
+    /** Property set by GraalVM to {@code runtime} when running inside a native executable. */
+    private static final String IMAGE_CODE_PROPERTY = "org.graalvm.nativeimage.imagecode";
+
+    private static boolean isNativeImage() {
+        return "runtime".equals(System.getProperty(IMAGE_CODE_PROPERTY));
     }
 
-    @SuppressWarnings("UnusedReturnValue")
-    private static boolean mkdir(File dir) throws IOException {
-        if (!dir.exists()) {
-            if (!dir.mkdirs()) {
-                throw new IOException(String.format("Error creating directory %s", dir.getAbsolutePath()));
-            }
+    /** Returns the directories searched for libraries shipped alongside a native executable. */
+    private static List<File> getInstalledLibDirs() {
+        List<File> dirs = new ArrayList<>();
 
-            return true;
-        } else {
-            if (!dir.isDirectory()) {
-                throw new IOException(String.format("Path exists and it does not point to a directory: %s", dir.getAbsolutePath()));
+        File exe = new File("/proc/self/exe"); // Linux only (elsewhere, executable directory is expected in library path)
+        if (exe.exists()) {
+            try {
+                dirs.add(exe.getCanonicalFile().getParentFile());
+            } catch (IOException ignored) {}
+        }
+
+        String libraryPath = System.getProperty("java.library.path");
+        if (libraryPath != null) {
+            for (String dir : libraryPath.split(File.pathSeparator)) {
+                if (!dir.isEmpty())
+                    dirs.add(new File(dir));
             }
+        }
 
-            return false;
+        return dirs;
+    }
+
+    /** Looks for an installed copy of an embedded library (by its file name). */
+    private static File findInstalledLib(String embeddedPath) {
+        String name = new File(embeddedPath).getName();
+        for (File dir : getInstalledLibDirs()) {
+            File libFile = new File(dir, name);
+            if (libFile.isFile())
+                return libFile;
         }
+
+        return null;
     }
 
-    private static File createTmpDir(String name) throws IOException {
-        File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+    private static InputStream getEmbeddedResource(String embeddedPath) {
+        return NativeLibLoader.class.getResourceAsStream(embeddedPath);
+    }
 
-        if (name != null && !name.isEmpty()) {
-            tmpDir = new File(tmpDir, name);
-            for (int i = 1; tmpDir.exists() && i <= 1000; i++) {
-                tmpDir = new File(tmpDir.getParent(), String.format("%s_%d", name, i));
+    /**
+     * Creates given directory (if needed) with owner-only permissions and checks it is private to the current user.
+     *
+     * <p>An existing directory is accepted only if it is a real directory (not a symbolic link), owned by the current
+     * user and not writable by group/others. Ownership and permissions are checked only on file systems supporting POSIX
+     * attributes. Current user is the owner of a file created in the directory (a user name lookup fails for users
+     * without a passwd entry, e.g. arbitrary UIDs in containers).</p>
+     */
+    private static void mkPrivateDir(File dir) throws IOException {
+        Path path = dir.toPath();
+        boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                if (posix) {
+                    Files.createDirectories(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+                } else {
+                    Files.createDirectories(path);
+                }
+            } catch (FileAlreadyExistsException ignored) {
+                // Created by someone else meanwhile (checked below)
             }
+        }
 
-            if (tmpDir.exists())
-                throw new IOException("Too many attempts trying to create directory");
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+            throw new IOException(String.format("Path is not a directory (or is a symbolic link): %s", dir.getAbsolutePath()));
 
-            mkdir(tmpDir);
+        if (!posix)
+            return;
+
+        UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user;
+        Path probe = Files.createTempFile(path, ".owner", null);
+        try {
+            user = Files.getOwner(probe, LinkOption.NOFOLLOW_LINKS);
+        } finally {
+            Files.deleteIfExists(probe);
+        }
+
+        if (!owner.equals(user))
+            throw new IOException(String.format("Directory is not owned by current user: %s", dir.getAbsolutePath()));
+
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+        if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE))
+            throw new IOException(String.format("Directory is writable by other users: %s", dir.getAbsolutePath()));
+    }
+
+    /** Creates a new directory (private to the current JVM) in the temporary-file directory. */
+    private static File mkTempDir() throws IOException {
+        Path path;
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            path = Files.createTempDirectory(DEFAULT_CACHE_DIR_NAME + "-", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            path = Files.createTempDirectory(DEFAULT_CACHE_DIR_NAME + "-");
         }
 
-        return tmpDir;
+        return path.toFile();
     }
 
-    private static File extractEmbeddedResource(String embeddedPath, File outputDir) throws IOException {
+    /** Requests deletion of given file tree when the JVM exits. */
+    private static void deleteOnExit(File file) {
+        file.deleteOnExit(); // Registered before children, so it is deleted after them
+
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteOnExit(child);
+            }
+        }
+    }
+
+    private static byte[] readEmbeddedResource(String embeddedPath) throws IOException {
         try (InputStream is = getEmbeddedResource(embeddedPath)) {
             if (is == null) {
                 throw new IOException(String.format("No such resource: %s", embeddedPath));
             }
 
-            File libFile = new File(outputDir, embeddedPath);
-            mkdir(libFile.getParentFile());
-
-            //noinspection IOStreamConstructor
-            try (OutputStream os = new FileOutputStream(libFile)) {
-                byte[] buffer = new byte[1024];
-                int read;
-                while ((read = is.read(buffer)) > 0) {
-                    os.write(buffer, 0, read);
-                }
+            ByteArrayOutputStream os = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                os.write(buffer, 0, read);
             }
 
-            return libFile;
+            return os.toByteArray();
         }
     }
 
-    private static void deleteDirectory(File dir) throws IOException {
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    deleteDirectory(file);
-                } else {
-                    if (!file.delete()) {
-                        throw new IOException(String.format("Cannot delete file: %s", file.getAbsolutePath()));
-                    }
+    /**
+     * Returns the name of the cache entry holding given content.
+     *
+     * <p>A checksum is enough to tell library builds apart (cached copies are compared byte by byte before being used)
+     * and, unlike a message digest, does not require loading security providers during startup.</p>
+     */
+    private static String getCacheEntryName(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return String.format("%08x-%d", crc.getValue(), content.length);
+    }
+
+    /** Checks whether given file exists and holds exactly given content. */
+    private static boolean isValid(File file, byte[] content) throws IOException {
+        if (!file.isFile() || file.length() != content.length)
+            return false;
+
+        return Arrays.equals(Files.readAllBytes(file.toPath()), content);
+    }
+
+    private static void writeFile(File file, byte[] content) throws IOException {
+        //noinspection IOStreamConstructor
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write(content);
+        }
+    }
+
+    /**
+     * Returns a verified copy of a library in the cache, extracting it if needed.
+     *
+     * <p>Extraction is guarded by a file lock (so concurrent JVMs do not extract the same library at once) and the
+     * library is written to a temporary file which is then renamed, so a partially written library is never
+     * loaded.</p>
+     */
+    private static File getCachedResource(String embeddedPath, byte[] content, File cacheDir) throws IOException {
+        File entryDir = new File(cacheDir, getCacheEntryName(content));
+        File libFile = new File(entryDir, new File(embeddedPath).getName());
+
+        mkPrivateDir(entryDir); // Checked even if already extracted, so a cached copy is trusted only in a private dir
+        if (isValid(libFile, content))
+            return libFile;
+
+        try (FileChannel lockChannel = FileChannel.open(new File(entryDir, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = lockChannel.lock()) {
+
+            if (isValid(libFile, content))
+                return libFile; // Extracted by someone else meanwhile
+
+            File tmpFile = File.createTempFile(libFile.getName(), ".tmp", entryDir);
+            try {
+                writeFile(tmpFile, content);
+                try {
+                    Files.move(tmpFile.toPath(), libFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmpFile.toPath(), libFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 }
+            } finally {
+                //noinspection ResultOfMethodCallIgnored
+                tmpFile.delete();
             }
         }
 
-        if (!dir.delete()) {
-            throw new IOException(String.format("Cannot delete directory: %s", dir.getAbsolutePath()));
-        }
+        return libFile;
     }
     // =================================================================================================================
     // endregion
 
     private final Map<String, Set<String>> libMap = new HashMap<>();
-    private final String tmpDirName;
+    private final String cacheDirName;
 
     private boolean inited;
 
@@ -117,13 +278,13 @@ abstract class NativeLibLoader {
         this(null);
     }
 
-    public NativeLibLoader(String tmpDirName) {
-        this.tmpDirName = tmpDirName;
+    public NativeLibLoader(String cacheDirName) {
+        this.cacheDirName = cacheDirName;
     }
 
     @SuppressWarnings("unused")
-    public final String getTmpDirName() {
-        return tmpDirName;
+    public final String getCacheDirName() {
+        return cacheDirName;
     }
 
     public synchronized final NativeLibLoader registerEmbeddedLib(String host, String embeddedLibPath) throws IllegalStateException {
@@ -151,29 +312,97 @@ abstract class NativeLibLoader {
 
     protected abstract String getNativeHost();
 
+    /** Returns the cache directory set through {@link #CACHE_DIR_PROPERTY}, or {@code null} if not set. */
+    private static File getConfiguredCacheDir() {
+        String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+        return cacheDir == null || cacheDir.isEmpty() ? null : new File(cacheDir);
+    }
+
+    private File getDefaultCacheDir() {
+        String name = cacheDirName == null || cacheDirName.isEmpty() ? DEFAULT_CACHE_DIR_NAME : cacheDirName;
+        return new File(new File(System.getProperty("user.home"), ".cache"), name);
+    }
+
+    /** Returns installed copies of all given libraries, or {@code null} if any of them is missing. */
+    private File[] findInstalledLibs(Set<String> embeddedLibPaths) {
+        File[] libFiles = new File[embeddedLibPaths.size()];
+        int i = 0;
+        for (String embeddedLibPath : embeddedLibPaths) {
+            if ((libFiles[i++] = findInstalledLib(embeddedLibPath)) == null)
+                return null;
+        }
+
+        return libFiles;
+    }
+
+    private File[] extractToCache(Map<String, byte[]> embeddedLibs, File cacheDir) throws IOException {
+        File[] libFiles = new File[embeddedLibs.size()];
+        int i = 0;
+        for (Map.Entry<String, byte[]> embeddedLib : embeddedLibs.entrySet()) {
+            libFiles[i++] = getCachedResource(embeddedLib.getKey(), embeddedLib.getValue(), cacheDir);
+        }
+
+        return libFiles;
+    }
+
+    /**
+     * Extracts libraries into the cache directory. If the default cache directory is not usable (e.g. home directory is
+     * missing or read-only), libraries are extracted into a fresh temporary directory deleted on exit.
+     */
+    private File[] extractToCache(Set<String> embeddedLibPaths) throws IOException {
+        // Libraries are read first, so only cache directory failures lead to a temporary directory
+        Map<String, byte[]> embeddedLibs = new LinkedHashMap<>();
+        for (String embeddedLibPath : embeddedLibPaths) {
+            embeddedLibs.put(embeddedLibPath, readEmbeddedResource(embeddedLibPath));
+        }
+
+        File cacheDir = getConfiguredCacheDir();
+        if (cacheDir != null) {
+            mkPrivateDir(cacheDir);
+            return extractToCache(embeddedLibs, cacheDir);
+        }
+
+        cacheDir = getDefaultCacheDir();
+        try {
+            mkPrivateDir(cacheDir);
+            return extractToCache(embeddedLibs, cacheDir);
+        } catch (IOException e) {
+            File tmpDir = mkTempDir();
+            try {
+                return extractToCache(embeddedLibs, tmpDir);
+            } catch (IOException tmpError) {
+                tmpError.addSuppressed(e);
+                throw tmpError;
+            } finally {
+                deleteOnExit(tmpDir);
+            }
+        }
+    }
+
     public synchronized final void init() throws IOException {
         if (inited)
             return;
 
-        String nativeHost = getNativeHost();
+        String libPath = System.getProperty(LIB_PATH_PROPERTY);
+        if (libPath != null && !libPath.isEmpty()) {
+            for (String path : libPath.split(File.pathSeparator)) {
+                if (!path.isEmpty())
+                    System.load(new File(path).getAbsolutePath());
+            }
+
+            inited = true;
+            return;
+        }
 
-        Set<String> embeddedLibPaths = libMap.get(nativeHost);
+        Set<String> embeddedLibPaths = libMap.get(getNativeHost());
         if (embeddedLibPaths == null)
             return;
 
-        File tmpDir = createTmpDir(tmpDirName);
-        if (tmpDirName != null && !tmpDirName.isEmpty()) {
-            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                try {
-                    deleteDirectory(tmpDir);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }));
-        }
+        File[] libFiles = isNativeImage() ? findInstalledLibs(embeddedLibPaths) : null;
+        if (libFiles == null)
+            libFiles = extractToCache(embeddedLibPaths);
 
-        for (String embeddedLibPath : embeddedLibPaths) {
-            File libFile = extractEmbeddedResource(embeddedLibPath, tmpDir);
+        for (File libFile : libFiles) {
             System.load(libFile.getAbsolutePath());
         }
 
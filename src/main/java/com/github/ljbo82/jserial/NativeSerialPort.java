@@ -18,21 +18,32 @@ package com.github.ljbo82.jserial;
 import java.io.IOException;
 
 class NativeSerialPort {
-    private static boolean inited;
+    private static volatile boolean inited;
     private static String  nativeHost;
 
     private NativeSerialPort() {}
 
     private static final int IO      = -3;
     private static final int ACCESS  = -4;
-    private static final int TIMEOUT = -7;
-
-    static synchronized void throwNativeError() throws IOException {
-        initNativeInterface();
+    /*pp*/  static final int TIMEOUT = -7;
+
+    /**
+     * Returns the error code set by the last failed native call. Must be called right after the failure, with native
+     * interface initialized.
+     *
+     * <p>Native error state is process-wide. It is read without locking and it is not cleared, since every failure
+     * overwrites it: clearing it would open a window in which a concurrent failure on another port could have its code
+     * wiped before being read.</p>
+     */
+    static int lastError() {
+        return getCurrentError();
+    }
 
-        int nativeCode = getCurrentError();
-        clearCurrentError();
+    static void throwNativeError() throws IOException {
+        throwNativeError(lastError());
+    }
 
+    static void throwNativeError(int nativeCode) throws IOException {
         String errorMsg;
         switch (nativeCode) {
             case TIMEOUT:
@@ -91,20 +102,32 @@ class NativeSerialPort {
         return nativeHost;
     }
 
-    public static synchronized void initNativeInterface() throws IOException {
+    public static void initNativeInterface() throws IOException {
+        if (!inited)
+            initNativeInterfaceSync();
+    }
+
+    private static synchronized void initNativeInterfaceSync() throws IOException {
         if (inited)
             return;
 
-        new NativeLibLoader(NativeSerialPort.class.getName()) {
-            @Override
-            protected String getNativeHost() {
-                return NativeSerialPort.getNativeHost();
+        Object event = JfrEvents.begin(JfrEventType.NATIVE_INIT);
+        try {
+            new NativeLibLoader(NativeSerialPort.class.getName()) {
+                @Override
+                protected String getNativeHost() {
+                    return NativeSerialPort.getNativeHost();
+                }
             }
+                .registerEmbeddedLib("linux-x64",   "/native/jserial-jni-x64.so")
+                .registerEmbeddedLib("windows-x64", "/native/jserial-jni-x64.dll")
+                .init();
+        } catch (IOException | RuntimeException | Error e) {
+            JfrEvents.commit(event, null, 0, e);
+            throw e;
         }
-            .registerEmbeddedLib("linux-x64",   "/native/jserial-jni-x64.so")
-            .registerEmbeddedLib("windows-x64", "/native/jserial-jni-x64.dll")
-            .init();
 
+        JfrEvents.commit(event, null, 0, null);
         inited = true;
     }
 
@@ -115,6 +138,7 @@ class NativeSerialPort {
 
     public static native int getCurrentError();
 
+    @SuppressWarnings("unused")
     public static native void clearCurrentError();
 
     public static native long open(String portName);
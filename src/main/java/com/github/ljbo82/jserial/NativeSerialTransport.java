@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import com.github.ljbo82.jserial.SerialPort.DataBits;
+import com.github.ljbo82.jserial.SerialPort.Parity;
+import com.github.ljbo82.jserial.SerialPort.PurgeType;
+import com.github.ljbo82.jserial.SerialPort.StopBits;
+
+import java.io.IOException;
+
+/** Transport backed by the native library. */
+class NativeSerialTransport implements SerialTransport {
+    private static final long CLOSED_NATIVE_PORT   = -1;
+    private static final long UNKNOWN_READ_TIMEOUT = -1;
+
+    private final long nativePort;
+    private long appliedReadTimeout; // Read timeout currently set in native port
+
+    private static long open(String name) throws IOException {
+        NativeSerialPort.initNativeInterface();
+
+        long nativePort;
+        if ((nativePort = NativeSerialPort.open(name)) == CLOSED_NATIVE_PORT)
+            NativeSerialPort.throwNativeError();
+
+        return nativePort;
+    }
+
+    NativeSerialTransport(String name) throws IOException {
+        this.nativePort = open(name);
+        this.appliedReadTimeout = NativeSerialPort.getReadTimeout(nativePort);
+    }
+
+    /**
+     * Opens a port applying given line settings. Current settings are not queried and the read timeout is applied by
+     * the first read, so the open takes two native calls.
+     */
+    NativeSerialTransport(String name, SerialConfig config) throws IOException {
+        this.nativePort = open(name);
+        this.appliedReadTimeout = UNKNOWN_READ_TIMEOUT;
+
+        try {
+            config(config.getBaud(), config.getDataBits(), config.getParity(), config.getStopBits());
+        } catch (IOException e) {
+            NativeSerialPort.close(nativePort);
+            throw e;
+        }
+    }
+
+    /** Returns the read timeout set when port was opened. */
+    long getInitialReadTimeout() {
+        return appliedReadTimeout;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len, long timeoutMillis) throws IOException {
+        // Native timeout is changed only when needed
+        if (appliedReadTimeout != timeoutMillis) {
+            if (!NativeSerialPort.setReadTimeout(nativePort, timeoutMillis))
+                NativeSerialPort.throwNativeError();
+
+            appliedReadTimeout = timeoutMillis;
+        }
+
+        int mRead = NativeSerialPort.read(nativePort, b, off, len);
+        if (mRead < 0) {
+            // Native error state is process-wide (see NativeSerialPort.lastError()): it is read right away, without
+            // locking, so a device lost during a slice is reported by this read
+            int nativeCode = NativeSerialPort.lastError();
+            if (nativeCode != NativeSerialPort.TIMEOUT)
+                NativeSerialPort.throwNativeError(nativeCode);
+
+            return 0;
+        }
+
+        return mRead;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!NativeSerialPort.write(nativePort, b, off, len))
+            NativeSerialPort.throwNativeError();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!NativeSerialPort.flush(nativePort))
+            NativeSerialPort.throwNativeError();
+    }
+
+    @Override
+    public void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException {
+        if (!NativeSerialPort.config(nativePort, baud, dataBits.nativeCode, parity.nativeCode, stopBits.nativeCode))
+            NativeSerialPort.throwNativeError();
+    }
+
+    @Override
+    public int getBaud() {
+        return NativeSerialPort.getBaud(nativePort);
+    }
+
+    @Override
+    public DataBits getDataBits() {
+        return DataBits.fromNativeCode(NativeSerialPort.getDataBits(nativePort));
+    }
+
+    @Override
+    public Parity getParity() {
+        return Parity.fromNativeCode(NativeSerialPort.getParity(nativePort));
+    }
+
+    @Override
+    public StopBits getStopBits() {
+        return StopBits.fromNativeCode(NativeSerialPort.getStopBits(nativePort));
+    }
+
+    @Override
+    public void purgeRX() throws IOException {
+        purge(PurgeType.RX);
+    }
+
+    @Override
+    public void purgeTX() throws IOException {
+        purge(PurgeType.TX);
+    }
+
+    private void purge(PurgeType purgeType) throws IOException {
+        if (!NativeSerialPort.purge(nativePort, purgeType.nativeCode))
+            NativeSerialPort.throwNativeError();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!NativeSerialPort.close(nativePort))
+            NativeSerialPort.throwNativeError();
+    }
+}
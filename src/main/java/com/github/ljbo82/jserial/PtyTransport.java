@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import com.github.ljbo82.jserial.SerialPort.DataBits;
+import com.github.ljbo82.jserial.SerialPort.Parity;
+import com.github.ljbo82.jserial.SerialPort.StopBits;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Transport for linux terminal devices (e.g. pseudo-terminals created by <i>socat</i>), implemented with plain file I/O
+ * and the {@code stty} utility (no native library is involved).
+ *
+ * <p>The terminal is put in raw mode with a read timer of one tenth of a second ({@code min 0 time 1}), so reads
+ * waiting for data return at that granularity. When opened, the device is configured as 9600 8N1. Since there is no
+ * access to {@code tcdrain()} and {@code tcflush()}, {@link #flush()} and {@link #purgeTX()} do nothing.</p>
+ */
+public final class PtyTransport implements SerialTransport {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    private static final int      DEFAULT_BAUD      = 9600;
+    private static final DataBits DEFAULT_DATA_BITS = DataBits.DATA_BITS_8;
+    private static final Parity   DEFAULT_PARITY    = Parity.NONE;
+    private static final StopBits DEFAULT_STOP_BITS = StopBits.STOP_BITS_1;
+
+    private static final String[] RAW_MODE = {"raw", "-echo", "min", "0", "time", "1"};
+
+    private static List<String> getConfigArgs(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException {
+        if (baud <= 0)
+            throw new IllegalArgumentException("Invalid baud");
+
+        List<String> args = new ArrayList<>();
+        args.add(Integer.toString(baud));
+        args.add(String.format("cs%d", dataBits.nativeCode));
+
+        switch (parity) {
+            case NONE:
+                args.add("-parenb");
+                break;
+
+            case EVEN:
+                args.addAll(Arrays.asList("parenb", "-parodd"));
+                break;
+
+            case ODD:
+                args.addAll(Arrays.asList("parenb", "parodd"));
+                break;
+        }
+
+        switch (stopBits) {
+            case STOP_BITS_1:
+                args.add("-cstopb");
+                break;
+
+            case STOP_BITS_2:
+                args.add("cstopb");
+                break;
+
+            default:
+                throw new IOException(String.format("Unsupported stop bits: %s", stopBits));
+        }
+
+        return args;
+    }
+    // =================================================================================================================
+    // endregion
+
+    private final String path;
+    private final FileInputStream in;
+    private final FileOutputStream out;
+
+    private volatile int baud;
+    private volatile DataBits dataBits;
+    private volatile Parity parity;
+    private volatile StopBits stopBits;
+
+    public PtyTransport(String path) throws IOException {
+        this.path = path;
+
+        List<String> args = getConfigArgs(DEFAULT_BAUD, DEFAULT_DATA_BITS, DEFAULT_PARITY, DEFAULT_STOP_BITS);
+        args.addAll(Arrays.asList(RAW_MODE));
+        stty(args);
+
+        this.in = new FileInputStream(path);
+        try {
+            this.out = new FileOutputStream(path);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+
+        this.baud = DEFAULT_BAUD;
+        this.dataBits = DEFAULT_DATA_BITS;
+        this.parity = DEFAULT_PARITY;
+        this.stopBits = DEFAULT_STOP_BITS;
+    }
+
+    private void stty(List<String> args) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList("stty", "-F", path));
+        command.addAll(args);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream is = process.getInputStream()) {
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = is.read(buffer)) > 0)
+                output.write(buffer, 0, read);
+        }
+
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        if (exitCode != 0)
+            throw new IOException(String.format("Error configuring %s: %s", path, new String(output.toByteArray(), StandardCharsets.UTF_8).trim()));
+    }
+
+    /** Reads data from the device. Waits shorter than the terminal read timer may take up to one tenth of a second. */
+    @Override
+    public int read(byte[] b, int off, int len, long timeoutMillis) throws IOException {
+        int available = in.available();
+
+        if (available > 0)
+            return in.read(b, off, Math.min(len, available));
+
+        if (timeoutMillis == 0)
+            return 0;
+
+        // Terminal read returns zero bytes (reported as EOF) when read timer expires
+        int mRead = in.read(b, off, len);
+        return Math.max(mRead, 0);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException {
+        stty(getConfigArgs(baud, dataBits, parity, stopBits));
+
+        this.baud = baud;
+        this.dataBits = dataBits;
+        this.parity = parity;
+        this.stopBits = stopBits;
+    }
+
+    @Override
+    public int getBaud() {
+        return baud;
+    }
+
+    @Override
+    public DataBits getDataBits() {
+        return dataBits;
+    }
+
+    @Override
+    public Parity getParity() {
+        return parity;
+    }
+
+    @Override
+    public StopBits getStopBits() {
+        return stopBits;
+    }
+
+    @Override
+    public void purgeRX() throws IOException {
+        byte[] buffer = new byte[256];
+        int available;
+        while ((available = in.available()) > 0) {
+            if (in.read(buffer, 0, Math.min(available, buffer.length)) <= 0)
+                break;
+        }
+    }
+
+    @Override
+    public void purgeTX() {}
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            out.close();
+        }
+    }
+}
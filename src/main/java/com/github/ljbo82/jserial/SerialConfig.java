@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import com.github.ljbo82.jserial.SerialPort.DataBits;
+import com.github.ljbo82.jserial.SerialPort.Parity;
+import com.github.ljbo82.jserial.SerialPort.StopBits;
+
+import java.util.Objects;
+
+/**
+ * Immutable port configuration (line settings and read timeout).
+ *
+ * <p>Opening a port with a configuration (see {@link SerialPort#SerialPort(String, SerialConfig)}) applies it as part
+ * of the open, instead of querying the initial configuration and reconfiguring the port afterwards. Any positive baud
+ * rate is accepted (including non-standard ones): whether it is supported is decided by the transport when the
+ * configuration is applied.</p>
+ */
+public final class SerialConfig {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    /** 9600 8N1, without read timeout (reads return immediately when there is no data). */
+    public static final SerialConfig DEFAULT = new SerialConfig(9600, DataBits.DATA_BITS_8, Parity.NONE, StopBits.STOP_BITS_1);
+    // =================================================================================================================
+    // endregion
+
+    private final int baud;
+    private final DataBits dataBits;
+    private final Parity parity;
+    private final StopBits stopBits;
+    private final long readTimeout;
+
+    public SerialConfig(int baud, DataBits dataBits, Parity parity, StopBits stopBits) {
+        this(baud, dataBits, parity, stopBits, 0);
+    }
+
+    /** @param readTimeout read timeout in milliseconds (see {@link SerialPort#setReadTimeout(long)}). */
+    public SerialConfig(int baud, DataBits dataBits, Parity parity, StopBits stopBits, long readTimeout) {
+        if (dataBits == null || parity == null || stopBits == null)
+            throw new NullPointerException();
+
+        if (baud <= 0)
+            throw new IllegalArgumentException("Invalid baud");
+
+        if (readTimeout < 0)
+            throw new IllegalArgumentException("Negative timeout");
+
+        this.baud = baud;
+        this.dataBits = dataBits;
+        this.parity = parity;
+        this.stopBits = stopBits;
+        this.readTimeout = readTimeout;
+    }
+
+    public int getBaud() {
+        return baud;
+    }
+
+    public DataBits getDataBits() {
+        return dataBits;
+    }
+
+    public Parity getParity() {
+        return parity;
+    }
+
+    public StopBits getStopBits() {
+        return stopBits;
+    }
+
+    public long getReadTimeout() {
+        return readTimeout;
+    }
+
+    public SerialConfig withBaud(int baud) {
+        return new SerialConfig(baud, dataBits, parity, stopBits, readTimeout);
+    }
+
+    public SerialConfig withDataBits(DataBits dataBits) {
+        return new SerialConfig(baud, dataBits, parity, stopBits, readTimeout);
+    }
+
+    public SerialConfig withParity(Parity parity) {
+        return new SerialConfig(baud, dataBits, parity, stopBits, readTimeout);
+    }
+
+    public SerialConfig withStopBits(StopBits stopBits) {
+        return new SerialConfig(baud, dataBits, parity, stopBits, readTimeout);
+    }
+
+    public SerialConfig withReadTimeout(long readTimeout) {
+        return new SerialConfig(baud, dataBits, parity, stopBits, readTimeout);
+    }
+
+    /** Checks whether line settings (everything but read timeout) are the same as the ones of given config. */
+    public boolean hasSameLineSettings(SerialConfig other) {
+        return baud == other.baud && dataBits == other.dataBits && parity == other.parity && stopBits == other.stopBits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof SerialConfig))
+            return false;
+
+        SerialConfig other = (SerialConfig) o;
+        return hasSameLineSettings(other) && readTimeout == other.readTimeout;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(baud, dataBits, parity, stopBits, readTimeout);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %d%s%s (read timeout: %d ms)", baud, dataBits.nativeCode, parity.protocolStrToken, stopBits.protocolStrToken, readTimeout);
+    }
+}
@@ -18,14 +18,26 @@ package com.github.ljbo82.jserial;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.ByteChannel;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class SerialPort implements AutoCloseable {
-    private static final int SEMAPHORE_MAX_PERMITS =  2; // Read & Write
-    /*pp*/  static final int CLOSED_NATIVE_PORT    = -1;
+    /*pp*/  static final long READ_SLICE_MILLIS = 100; // Max time spent in a transport read before checking for close
+    /*pp*/  static final long CLOSE_WAIT_MILLIS = 2 * READ_SLICE_MILLIS; // Max time close() waits for in-progress I/O
+
+    /** Returned by deadline-based reads when the deadline expires. */
+    public static final int TIMED_OUT = -2;
+
+    /** Returned by {@link #readUntil(byte, byte[], int, int, long)} when the delimiter is not found within the limit. */
+    public static final int LIMIT_EXCEEDED = -3;
 
     public enum DataBits {
         DATA_BITS_5(5),
@@ -52,7 +64,7 @@ public class SerialPort implements AutoCloseable {
             return dataBits;
         }
 
-        private final int nativeCode;
+        /*pp*/ final int nativeCode;
 
         DataBits(int nativeCode) {
             this.nativeCode = nativeCode;
@@ -88,8 +100,8 @@ public class SerialPort implements AutoCloseable {
             return parity;
         }
 
-        private final int nativeCode;
-        private final String protocolStrToken;
+        /*pp*/ final int nativeCode;
+        /*pp*/ final String protocolStrToken;
 
         Parity(int nativeCode, String protocolStrToken) {
             this.nativeCode = nativeCode;
@@ -126,8 +138,8 @@ public class SerialPort implements AutoCloseable {
             return stopBits;
         }
 
-        private final int nativeCode;
-        private final String protocolStrToken;
+        /*pp*/ final int nativeCode;
+        /*pp*/ final String protocolStrToken;
 
         StopBits(int nativeCode, String protocolStrToken) {
             this.nativeCode = nativeCode;
@@ -146,7 +158,7 @@ public class SerialPort implements AutoCloseable {
         @SuppressWarnings("unused")
         RX_TX(2);
 
-        private final int nativeCode;
+        /*pp*/ final int nativeCode;
 
         PurgeType(int nativeCode) {
             this.nativeCode = nativeCode;
@@ -158,7 +170,31 @@ public class SerialPort implements AutoCloseable {
         }
     }
 
-    public static class TimeoutException extends Exception {}
+    /** Receives data arriving at a port. See {@link #setDataListener(DataListener, Executor)}. */
+    public interface DataListener {
+        /**
+         * Called when data arrives at the port. Calls for the same port never overlap.
+         *
+         * @param data received chunk (ownership is transferred to the listener).
+         */
+        void onData(SerialPort port, byte[] data);
+
+        /** Called when reading from the port fails. The listener is removed afterwards. */
+        default void onError(SerialPort port, IOException error) {}
+    }
+
+    /**
+     * Signals that a read timed out.
+     *
+     * <p>Timeouts are part of the regular control flow of most protocols, so these exceptions do not capture a stack
+     * trace.</p>
+     */
+    public static class TimeoutException extends Exception {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
 
     public static class Exception extends IOException {}
 
@@ -172,220 +208,717 @@ public class SerialPort implements AutoCloseable {
         return portNames;
     }
 
+    /** Immutable snapshot of port state, published through a volatile field and read without locking. */
+    private static final class State {
+        final boolean open;
+        final long readTimeout;
+        final int baud;
+        final DataBits dataBits;
+        final Parity parity;
+        final StopBits stopBits;
+
+        State(boolean open, long readTimeout, int baud, DataBits dataBits, Parity parity, StopBits stopBits) {
+            this.open = open;
+            this.readTimeout = readTimeout;
+            this.baud = baud;
+            this.dataBits = dataBits;
+            this.parity = parity;
+            this.stopBits = stopBits;
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        State closed() {
+            return new State(false, readTimeout, baud, dataBits, parity, stopBits);
+        }
+
+        State withReadTimeout(long readTimeout) {
+            return new State(open, readTimeout, baud, dataBits, parity, stopBits);
+        }
+
+        State withConfig(int baud, DataBits dataBits, Parity parity, StopBits stopBits) {
+            return new State(open, readTimeout, baud, dataBits, parity, stopBits);
+        }
+    }
+
     private final String name;
-    private final InputStream inputStream;
-    private final OutputStream outputStream;
-    /*pp*/  final Semaphore semaphore;
+    private final SerialTransport transport;
+    private final SerialPortMetrics metrics;
+    /*pp*/  final SerialPortInputStream inputStream;
+    private final SerialPortOutputStream outputStream;
+    private final ByteChannel channel;
+
+    // Readers and writers are guarded independently. Operations affecting the whole port take both locks (always in
+    // read -> write order).
+    /*pp*/  final ReentrantLock readLock  = new ReentrantLock();
+    /*pp*/  final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile State state;
+    private volatile boolean closeRequested;
+    private final AtomicBoolean closeOwned = new AtomicBoolean();
+
+    private SerialPortDispatcher.Registration dataListenerKey; // Guarded by 'this'
+    private SerialPortAsyncChannel asyncChannel;    // Guarded by 'this'
+
+    private static SerialTransport openNative(String name, SerialConfig config) throws IOException {
+        Object event = JfrEvents.begin(JfrEventType.OPEN);
+        try {
+            SerialTransport transport = config == null ? new NativeSerialTransport(name) : new NativeSerialTransport(name, config);
+            JfrEvents.commit(event, name, 0, null);
+            return transport;
+        } catch (IOException e) {
+            JfrEvents.commit(event, name, 0, e);
+            throw e;
+        }
+    }
 
-    /*pp*/  long nativeSerialPort;
-    private long readTimeout;
-    private int baud;
-    private DataBits dataBits;
-    private Parity parity;
-    private StopBits stopBits;
+    private static State getInitialState(SerialTransport transport) {
+        if (transport == null)
+            throw new NullPointerException();
+
+        return new State(
+            true,
+            transport instanceof NativeSerialTransport ? ((NativeSerialTransport) transport).getInitialReadTimeout() : 0,
+            transport.getBaud(),
+            transport.getDataBits(),
+            transport.getParity(),
+            transport.getStopBits()
+        );
+    }
 
     public SerialPort(String name) throws IOException {
-        NativeSerialPort.initNativeInterface();
+        this(name, openNative(name, null));
+    }
 
-        if ((this.nativeSerialPort = NativeSerialPort.open(name)) == CLOSED_NATIVE_PORT)
-            NativeSerialPort.throwNativeError();
+    /**
+     * Opens a port applying given configuration.
+     *
+     * <p>This is cheaper than opening the port and configuring it afterwards: the configuration is applied while
+     * opening and the initial configuration of the port is not queried.</p>
+     */
+    public SerialPort(String name, SerialConfig config) throws IOException {
+        this(name, openNative(name, Objects.requireNonNull(config, "Null config")), new State(true, config.getReadTimeout(), config.getBaud(), config.getDataBits(), config.getParity(), config.getStopBits()));
+    }
 
-        this.readTimeout = NativeSerialPort.getReadTimeout(this.nativeSerialPort);
-        this.baud = NativeSerialPort.getBaud(this.nativeSerialPort);
-        this.dataBits = DataBits.fromNativeCode(NativeSerialPort.getDataBits(this.nativeSerialPort));
-        this.parity = Parity.fromNativeCode(NativeSerialPort.getParity(this.nativeSerialPort));
-        this.stopBits = StopBits.fromNativeCode(NativeSerialPort.getStopBits(this.nativeSerialPort));
+    /**
+     * Creates a port on top of given (open) transport. Closing the port closes the transport.
+     *
+     * <p>Initial read timeout is the one of the native port or, for other transports, zero (non-blocking reads).</p>
+     */
+    public SerialPort(String name, SerialTransport transport) {
+        this(name, transport, getInitialState(transport));
+    }
 
+    private SerialPort(String name, SerialTransport transport, State state) {
+        if (name == null || transport == null)
+            throw new NullPointerException();
+
+        this.transport = transport;
+        this.state = state;
         this.name = name;
+        this.metrics = new SerialPortMetrics(name);
         this.inputStream = new SerialPortInputStream(this);
         this.outputStream = new SerialPortOutputStream(this);
+        this.channel = new SerialPortChannel(this);
 
-        this.semaphore = new Semaphore(SEMAPHORE_MAX_PERMITS);
+        metrics.register();
     }
 
-    public boolean isOpen() {
-        boolean result;
-        try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
-            result = nativeSerialPort != CLOSED_NATIVE_PORT;
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            return result;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+    /** Acquires readLock, accounting the time spent waiting for it. */
+    /*pp*/ void lockRead() {
+        if (readLock.tryLock())
+            return;
+
+        long start = System.nanoTime();
+        readLock.lock();
+        metrics.onLockWait(System.nanoTime() - start);
     }
 
-    @Override
-    public void close() throws IOException {
+    /** Acquires writeLock, accounting the time spent waiting for it. */
+    private void lockWrite() {
+        if (writeLock.tryLock())
+            return;
+
+        long start = System.nanoTime();
+        writeLock.lock();
+        metrics.onLockWait(System.nanoTime() - start);
+    }
+
+    private void lockAll() {
+        lockRead();
+        lockWrite();
+    }
+
+    /*pp*/ void unlockRead() {
+        readLock.unlock();
+        closeIfRequested();
+    }
+
+    private void unlockWrite() {
+        writeLock.unlock();
+        closeIfRequested();
+    }
+
+    private void unlockAll() {
+        writeLock.unlock();
+        readLock.unlock();
+        closeIfRequested();
+    }
+
+    /**
+     * Closes the transport if a close was requested and no I/O operation is in progress. Otherwise, the close is
+     * deferred to the thread finishing the in-progress operation.
+     *
+     * @return whether the native port was closed by this call.
+     */
+    private boolean closeIfRequested() {
+        if (!closeRequested || !readLock.tryLock())
+            return false;
+
         try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
-            if (nativeSerialPort != CLOSED_NATIVE_PORT) {
-                if (!NativeSerialPort.close(nativeSerialPort)) {
-                    NativeSerialPort.throwNativeError();
+            if (!writeLock.tryLock())
+                return false;
+
+            try {
+                State state = this.state;
+                if (!state.isOpen())
+                    return false;
+
+                this.state = state.closed();
+
+                try {
+                    transport.close();
+                } catch (IOException ignored) {
+                    // Deferred close errors cannot be reported
                 }
 
-                nativeSerialPort = CLOSED_NATIVE_PORT;
+                return true;
+            } finally {
+                writeLock.unlock();
             }
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e){
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            throw e;
+        } finally {
+            readLock.unlock();
         }
     }
 
-    public void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException {
+    /** Ensures port is open. Caller must hold at least one of the port locks. */
+    private void requireOpen() throws IOException {
+        if (closeRequested || !state.isOpen())
+            throw new IOException("Port is not open");
+    }
+
+    /** Converts a wait time into the transport read timeout of the next slice (rounding up partial milliseconds). */
+    private static long toSliceMillis(long remainingNanos) {
+        if (remainingNanos <= 0)
+            return 0;
+
+        return Math.min(READ_SLICE_MILLIS, (remainingNanos - 1) / 1_000_000 + 1);
+    }
+
+    /**
+     * Reads data from the port, waiting at most {@code timeoutNanos} for data to arrive. Caller must hold readLock.
+     *
+     * <p>Waits longer than {@link #READ_SLICE_MILLIS} are split into several transport reads, so a concurrent
+     * {@link #close()} is noticed in at most one slice.</p>
+     *
+     * @return number of bytes read, -1 if port is closed (EOS) or {@link #TIMED_OUT}. Zero is returned only when
+     * {@code timeoutNanos} is zero and there is no data.
+     */
+    private int readLocked(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        if (closeRequested || !state.isOpen())
+            return -1; // Port is closed (EOS)
+
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        long slice = toSliceMillis(timeoutNanos);
+        while (true) {
+            int mRead;
+            try {
+                mRead = transport.read(b, off, len, slice);
+            } catch (IOException e) {
+                metrics.onError();
+                throw e;
+            }
+
+            metrics.onRead(mRead);
+            if (mRead > 0) {
+                metrics.onReadCompleted(System.nanoTime() - start);
+                return mRead;
+            }
+
+            if (closeRequested)
+                return -1; // Port was closed while waiting for data (EOS)
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                if (timeoutNanos == 0)
+                    return 0;
+
+                metrics.onTimeout();
+                return TIMED_OUT;
+            }
+
+            slice = toSliceMillis(remaining);
+        }
+    }
+
+    /**
+     * Reads data from the port honoring port read timeout.
+     *
+     * @return number of bytes read or -1 if port is closed (EOS).
+     * @throws TimeoutException if no data arrived in time (immediately, with a zero read timeout).
+     */
+    /*pp*/ int nativeRead(byte[] b, int off, int len) throws IOException {
+        lockRead();
         try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
+            int mRead = readLocked(b, off, len, TimeUnit.MILLISECONDS.toNanos(state.readTimeout));
 
-            if (nativeSerialPort == CLOSED_NATIVE_PORT)
-                throw new IOException("Port is not open");
+            if (mRead == 0)
+                metrics.onTimeout(); // No data with a zero read timeout
 
-            if (!NativeSerialPort.config(nativeSerialPort, baud, dataBits.nativeCode, parity.nativeCode, stopBits.nativeCode))
-                NativeSerialPort.throwNativeError();
+            if (mRead == TIMED_OUT || mRead == 0)
+                throw new TimeoutException();
 
-            this.baud = baud;
-            this.dataBits = dataBits;
-            this.parity = parity;
-            this.stopBits = stopBits;
+            return mRead;
+        } finally {
+            unlockRead();
+        }
+    }
 
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            throw e;
+    /**
+     * Reads data from the port waiting at most given time, regardless of port read timeout. Caller must hold readLock.
+     *
+     * @return number of bytes read (zero if no data arrived in time) or -1 if port is closed (EOS).
+     */
+    /*pp*/ int nativeTryRead(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        int mRead = readLocked(b, off, len, timeoutNanos);
+        return mRead == TIMED_OUT ? 0 : mRead;
+    }
+
+    /**
+     * Reads data already received by the port without blocking. Caller must hold readLock.
+     *
+     * @return number of bytes read (possibly zero) or -1 if port is closed (EOS).
+     */
+    /*pp*/ int nativePoll(byte[] b, int off, int len) throws IOException {
+        return nativeTryRead(b, off, len, 0);
+    }
+
+    /** Returns whether I/O calls block in native code (which pins the carrier of a virtual thread). */
+    private boolean isNative() {
+        return transport instanceof NativeSerialTransport;
+    }
+
+    /*pp*/ void nativeWrite(byte[] b, int off, int len) throws IOException {
+        if (isNative() && VirtualThreads.isCurrentThreadVirtual()) {
+            SerialPortDispatcher.runOnPlatformThread(() -> nativeWrite(b, off, len));
+            return;
+        }
+
+        lockWrite();
+        try {
+            if (closeRequested || !state.isOpen())
+                throw new IOException("Port is closed");
+
+            long start = System.nanoTime();
+            try {
+                transport.write(b, off, len);
+            } catch (IOException e) {
+                metrics.onError();
+                throw e;
+            }
+
+            metrics.onWrite(len, System.nanoTime() - start);
+        } finally {
+            unlockWrite();
         }
     }
 
-    @SuppressWarnings("unused")
-    public void purgeRX() throws IOException {
+    /*pp*/ void nativeFlush() throws IOException {
+        if (isNative() && VirtualThreads.isCurrentThreadVirtual()) {
+            SerialPortDispatcher.runOnPlatformThread(this::nativeFlush);
+            return;
+        }
+
+        lockWrite();
         try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
+            if (closeRequested || !state.isOpen())
+                throw new IOException("Port is closed");
+
+            metrics.onFlush();
+            try {
+                transport.flush();
+            } catch (IOException e) {
+                metrics.onError();
+                throw e;
+            }
+        } finally {
+            unlockWrite();
+        }
+    }
 
-            if (nativeSerialPort == CLOSED_NATIVE_PORT)
-                throw new IOException("Port is not open");
+    public boolean isOpen() {
+        return !closeRequested && state.isOpen();
+    }
 
-            if (!NativeSerialPort.purge(nativeSerialPort, PurgeType.RX.nativeCode))
-                NativeSerialPort.throwNativeError();
+    /**
+     * Closes this port.
+     *
+     * <p>Blocked readers are woken up within {@link #READ_SLICE_MILLIS} and get an end-of-stream, while later writes
+     * fail. This method waits (up to {@link #CLOSE_WAIT_MILLIS}) for in-progress operations to finish and releases the
+     * transport before returning, so the device can be reopened right away. Only if an operation outlasts that wait
+     * (e.g. a write held by flow control) is the transport released later, by the thread finishing the operation.</p>
+     */
+    @Override
+    public void close() throws IOException {
+        if (closeOwned.getAndSet(true))
+            return;
 
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        Object event = JfrEvents.begin(JfrEventType.CLOSE);
+        try {
+            closeOwned();
+            JfrEvents.commit(event, name, 0, null);
         } catch (IOException e) {
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
+            JfrEvents.commit(event, name, 0, e);
             throw e;
         }
     }
 
+    /**
+     * Acquires given lock, waiting until given deadline (in {@link System#nanoTime()} units) for in-progress
+     * operations.
+     */
+    private static boolean tryLock(ReentrantLock lock, long deadline) {
+        try {
+            return lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false; // Close is deferred to the thread finishing the operation
+        }
+    }
+
+    /** Performs the close on behalf of the (single) thread which owns it. */
+    private void closeOwned() throws IOException {
+        IOException drainError = null;
+        if (state.isOpen()) {
+            try {
+                outputStream.drainBuffer();
+            } catch (IOException e) {
+                drainError = e;
+            }
+        }
+
+        closeRequested = true;
+        metrics.unregister();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_WAIT_MILLIS);
+        if (tryLock(readLock, deadline)) {
+            try {
+                if (tryLock(writeLock, deadline)) {
+                    try {
+                        // No operation in progress: close right away reporting errors
+                        State state = this.state;
+                        if (state.isOpen()) {
+                            this.state = state.closed();
+                            transport.close();
+                        }
+                    } finally {
+                        writeLock.unlock();
+                    }
+                }
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        // Covers the race with an operation that released its lock after the tryLock attempt above
+        closeIfRequested();
+
+        if (drainError != null)
+            throw drainError;
+    }
+
+    public void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException {
+        Object event = JfrEvents.begin(JfrEventType.CONFIG);
+        lockAll();
+        try {
+            requireOpen();
+
+            try {
+                transport.config(baud, dataBits, parity, stopBits);
+            } catch (IOException e) {
+                metrics.onError();
+                JfrEvents.commit(event, name, 0, e);
+                throw e;
+            }
+
+            this.state = state.withConfig(baud, dataBits, parity, stopBits);
+        } finally {
+            unlockAll();
+        }
+
+        JfrEvents.commit(event, name, 0, null);
+    }
+
+    /** Applies given configuration (line settings are applied only if they differ from current ones). */
+    public void config(SerialConfig config) throws IOException {
+        if (config == null)
+            throw new NullPointerException("Null config");
+
+        Object event = JfrEvents.begin(JfrEventType.CONFIG);
+        lockAll();
+        try {
+            requireOpen();
+
+            State state = this.state;
+            if (state.baud != config.getBaud() || state.dataBits != config.getDataBits() || state.parity != config.getParity() || state.stopBits != config.getStopBits()) {
+                try {
+                    transport.config(config.getBaud(), config.getDataBits(), config.getParity(), config.getStopBits());
+                } catch (IOException e) {
+                    metrics.onError();
+                    JfrEvents.commit(event, name, 0, e);
+                    throw e;
+                }
+            }
+
+            this.state = new State(true, config.getReadTimeout(), config.getBaud(), config.getDataBits(), config.getParity(), config.getStopBits());
+        } finally {
+            unlockAll();
+        }
+
+        JfrEvents.commit(event, name, 0, null);
+    }
+
     @SuppressWarnings("unused")
-    public void purgeTX() throws IOException {
+    public void purgeRX() throws IOException {
+        Object event = JfrEvents.begin(JfrEventType.PURGE);
+        lockRead();
         try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
+            requireOpen();
+
+            try {
+                transport.purgeRX();
+            } catch (IOException e) {
+                metrics.onError();
+                JfrEvents.commit(event, name, 0, e);
+                throw e;
+            }
 
-            if (nativeSerialPort == CLOSED_NATIVE_PORT)
-                throw new IOException("Port is not open");
+            inputStream.discardBuffer();
+        } finally {
+            unlockRead();
+        }
 
-            if (!NativeSerialPort.purge(nativeSerialPort, PurgeType.TX.nativeCode))
-                NativeSerialPort.throwNativeError();
+        JfrEvents.commit(event, name, 0, null);
+    }
 
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            throw e;
+    @SuppressWarnings("unused")
+    public void purgeTX() throws IOException {
+        Object event = JfrEvents.begin(JfrEventType.PURGE);
+        lockWrite();
+        try {
+            requireOpen();
+
+            try {
+                transport.purgeTX();
+            } catch (IOException e) {
+                metrics.onError();
+                JfrEvents.commit(event, name, 0, e);
+                throw e;
+            }
+        } finally {
+            unlockWrite();
         }
+
+        JfrEvents.commit(event, name, 0, null);
     }
 
+    /**
+     * Sets the read timeout.
+     *
+     * @param millis read timeout in milliseconds. Zero means stream reads fail immediately (with
+     *               {@link TimeoutException}) when there is no data.
+     */
     public void setReadTimeout(long millis) throws IOException {
+        if (millis < 0)
+            throw new IllegalArgumentException("Negative timeout");
+
+        // Timeout is passed to the transport by each read
+        lockRead();
         try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
+            requireOpen();
+            this.state = state.withReadTimeout(millis);
+        } finally {
+            unlockRead();
+        }
+    }
 
-            if (nativeSerialPort == CLOSED_NATIVE_PORT)
-                throw new IOException("Port is not open");
+    /**
+     * Reads data from the port, waiting at most given time for it to arrive. Port read timeout is neither used nor
+     * changed, and expiration is reported through the return value instead of a {@link TimeoutException}.
+     *
+     * <p>Data is served from the read-ahead buffer of the port input stream when available, so this method may be
+     * mixed with stream reads.</p>
+     *
+     * @param timeoutNanos maximum wait time in nanoseconds. Zero means the call returns immediately when there is no
+     *                     data. Transports wait in whole milliseconds, so sub-millisecond remainders are rounded up.
+     * @return number of bytes read (zero only if {@code len} is zero), {@link #TIMED_OUT} if no data arrived in time,
+     *         or -1 if port is closed (EOS).
+     */
+    public int tryRead(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        return inputStream.tryRead(b, off, len, timeoutNanos);
+    }
 
-            if (millis < 0)
-                throw new IllegalArgumentException("Negative timeout");
+    /**
+     * Reads data up to given delimiter, waiting at most given time for it to arrive.
+     *
+     * <p>Data is scanned in the read-ahead buffer of the port input stream, so each burst of received data takes a
+     * single transport read, and bytes following the delimiter are kept for subsequent reads. If {@code maxLen + 1}
+     * bytes do not fit the buffer, data is read directly into {@code b} by reads no larger than the buffer (single bytes
+     * if buffering is disabled). Unless the delimiter is found, no data is consumed.</p>
+     *
+     * @param maxLen maximum data length (not counting the delimiter).
+     * @param timeoutNanos maximum wait time in nanoseconds. Zero means only data already received is considered.
+     * @return length of data preceding the delimiter (which is consumed but not copied), -1 if port is closed (EOS),
+     * {@link #TIMED_OUT} or {@link #LIMIT_EXCEEDED}.
+     */
+    public int readUntil(byte delimiter, byte[] b, int off, int maxLen, long timeoutNanos) throws IOException {
+        return inputStream.readUntil(delimiter, b, off, maxLen, timeoutNanos);
+    }
 
-            if (!NativeSerialPort.setReadTimeout(nativeSerialPort, millis))
-                NativeSerialPort.throwNativeError();
+    /**
+     * Reads exactly {@code len} bytes, waiting at most given time for them to arrive.
+     *
+     * <p>Data is accumulated in the read-ahead buffer of the port input stream, so each burst of received data takes a
+     * single transport read. If {@code len} bytes do not fit the buffer (or buffering is disabled), data is read
+     * directly into {@code b}. Unless all data arrives in time, no data is consumed.</p>
+     *
+     * @param timeoutNanos maximum wait time in nanoseconds. Zero means only data already received is considered.
+     * @return {@code len}, -1 if port is closed (EOS) or {@link #TIMED_OUT}.
+     */
+    public int readFully(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        return inputStream.readFully(b, off, len, timeoutNanos);
+    }
 
-            this.readTimeout = millis;
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            throw e;
+    /**
+     * Sets a listener to be notified of data arriving at this port.
+     *
+     * <p>Data is delivered in the same order it was received. Port readiness is watched by a process-wide dispatcher
+     * thread, so no thread is blocked per port. While a listener is set, the application should not read from the port
+     * directly.</p>
+     *
+     * @param listener listener to set, or {@code null} to remove the current one.
+     * @param executor executor running the listener, or {@code null} to use a small shared I/O thread pool.
+     */
+    public synchronized void setDataListener(DataListener listener, Executor executor) {
+        if (dataListenerKey != null) {
+            dataListenerKey.cancel();
+            dataListenerKey = null;
         }
+
+        if (listener == null)
+            return;
+
+        if (!isOpen())
+            throw new IllegalStateException("Port is not open");
+
+        dataListenerKey = SerialPortDispatcher.getInstance().register(this, (port, error) -> {
+            if (error != null) {
+                listener.onError(port, error);
+                return false;
+            }
+
+            try {
+                int available = inputStream.available();
+                if (available == 0)
+                    return port.isOpen();
+
+                byte[] data = new byte[available];
+                int read = inputStream.read(data, 0, available);
+                if (read < 0)
+                    return false; // EOS
+
+                listener.onData(port, read == available ? data : Arrays.copyOf(data, read));
+                return true;
+            } catch (IOException e) {
+                listener.onError(port, e);
+                return false;
+            }
+        }, executor);
+    }
+
+    public void setDataListener(DataListener listener) {
+        setDataListener(listener, null);
+    }
+
+    /**
+     * Sets the size of the read-ahead buffer used by the port input stream.
+     *
+     * @param size buffer size in bytes. Zero disables read-ahead buffering.
+     * @throws IllegalStateException if size is zero while port is registered with a selector (e.g. a data listener is
+     *                               set).
+     */
+    public void setInputBufferSize(int size) {
+        inputStream.setBufferSize(size);
+    }
+
+    public int getInputBufferSize() {
+        return inputStream.getBufferSize();
+    }
+
+    /**
+     * Sets how data written through the port output stream is coalesced. Any buffered data is sent before the new
+     * policy takes effect.
+     */
+    public void setFlushPolicy(FlushPolicy flushPolicy) throws IOException {
+        outputStream.setFlushPolicy(flushPolicy);
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return outputStream.getFlushPolicy();
+    }
+
+    /** Returns the number of native write calls avoided by output coalescing since the port was opened. */
+    public long getSavedWriteCount() {
+        return outputStream.getSavedWrites();
+    }
+
+    /** Returns the I/O metrics of this port. */
+    public SerialPortMetrics getMetrics() {
+        return metrics;
     }
 
-    @SuppressWarnings("unused")
     public String getName() {
         return name;
     }
 
+    /** Returns a snapshot of current configuration. */
+    public SerialConfig getConfig() {
+        State state = this.state;
+        return new SerialConfig(state.baud, state.dataBits, state.parity, state.stopBits, state.readTimeout);
+    }
+
     public int getBaud() {
-        int baud;
-        try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
-            baud = this.baud;
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            return baud;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return state.baud;
     }
 
     public DataBits getDataBits() {
-        DataBits dataBits;
-        try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
-            dataBits = this.dataBits;
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            return dataBits;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return state.dataBits;
     }
 
     public Parity getParity() {
-        Parity parity;
-        try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
-            parity = this.parity;
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            return parity;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return state.parity;
     }
 
     public StopBits getStopBits() {
-        StopBits stopBits;
-        try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
-            stopBits = this.stopBits;
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            return stopBits;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return state.stopBits;
     }
 
     @SuppressWarnings("unused")
     public long getReadTimeout() {
-        long readTimeout;
-        try {
-            semaphore.acquire(SEMAPHORE_MAX_PERMITS);
-            readTimeout = this.readTimeout;
-            semaphore.release(SEMAPHORE_MAX_PERMITS);
-            return readTimeout;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return state.readTimeout;
     }
 
     public InputStream getInputStream() {
@@ -396,9 +929,26 @@ public class SerialPort implements AutoCloseable {
         return outputStream;
     }
 
+    public ByteChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns an asynchronous view of this port.
+     *
+     * <p>Asynchronous reads and a data listener (see {@link #setDataListener(DataListener, Executor)}) cannot be used
+     * at the same time.</p>
+     */
+    public synchronized SerialPortAsyncChannel getAsyncChannel() {
+        if (asyncChannel == null)
+            asyncChannel = new SerialPortAsyncChannel(this);
+
+        return asyncChannel;
+    }
+
     @Override
     public String toString() {
-        boolean open = (nativeSerialPort != CLOSED_NATIVE_PORT);
-        return String.format("%s %d %d%s%s%s", name, baud, dataBits.nativeCode, parity.protocolStrToken, stopBits.protocolStrToken, open ? "" : " (closed)");
+        State state = this.state;
+        return String.format("%s %d %d%s%s%s", name, state.baud, state.dataBits.nativeCode, state.parity.protocolStrToken, state.stopBits.protocolStrToken, isOpen() ? "" : " (closed)");
     }
 }
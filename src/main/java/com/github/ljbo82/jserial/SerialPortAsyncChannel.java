@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.channels.ReadPendingException;
+import java.nio.channels.WritePendingException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Asynchronous view of a serial port.
+ *
+ * <p>Reads do not block any thread while waiting for data: port readiness is watched by the process-wide dispatcher
+ * (see {@link SerialPort#setDataListener(SerialPort.DataListener, Executor)}) and completion runs on the shared I/O
+ * thread pool. Writes block in native code, so they run on a separate (unbounded) pool, never holding I/O threads
+ * needed by data listeners.</p>
+ *
+ * <p>At most one read and one write may be pending at a time. Operations may be cancelled through the returned future.
+ * A write timeout (or cancellation) only aborts a write which did not start yet.</p>
+ */
+public class SerialPortAsyncChannel implements AsynchronousByteChannel {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    private static void requireHandler(CompletionHandler<?, ?> handler) {
+        if (handler == null)
+            throw new NullPointerException("Null handler");
+    }
+
+    private static <A> void notify(CompletableFuture<Integer> future, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        future.whenComplete((result, error) -> {
+            if (error == null) {
+                handler.completed(result, attachment);
+            } else {
+                handler.failed(unwrap(error), attachment);
+            }
+        });
+    }
+
+    private static final class Operation extends CompletableFuture<Integer> {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile Runnable cleanup;
+        private volatile ScheduledFuture<?> timeoutTask;
+
+        /** Claims the right to complete this operation. */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void finish(Integer result, Throwable error) {
+            ScheduledFuture<?> timeoutTask = this.timeoutTask;
+            if (timeoutTask != null)
+                timeoutTask.cancel(false);
+
+            Runnable cleanup = this.cleanup;
+            if (cleanup != null)
+                cleanup.run();
+
+            if (error == null) {
+                super.complete(result);
+            } else {
+                super.completeExceptionally(error);
+            }
+        }
+
+        void scheduleTimeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0)
+                return;
+
+            timeoutTask = SerialPortDispatcher.getScheduler().schedule(() -> {
+                if (claim())
+                    finish(null, new InterruptedByTimeoutException());
+            }, timeout, unit);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!claim())
+                return false;
+
+            finish(null, new CancellationException());
+            return true;
+        }
+    }
+    // =================================================================================================================
+    // endregion
+
+    private final SerialPort serialPort;
+    private final Executor readExecutor;
+    private final Executor writeExecutor;
+    private final AtomicReference<Operation> pendingRead  = new AtomicReference<>();
+    private final AtomicReference<Operation> pendingWrite = new AtomicReference<>();
+
+    SerialPortAsyncChannel(SerialPort serialPort) {
+        this.serialPort = serialPort;
+        this.readExecutor = SerialPortDispatcher.getIoExecutor();
+        this.writeExecutor = SerialPortDispatcher.getBlockingExecutor();
+    }
+
+    public SerialPort getPort() {
+        return serialPort;
+    }
+
+    /**
+     * Reads a sequence of bytes from the port into given buffer, as soon as data is available.
+     *
+     * @param timeout maximum time to wait for data (zero for no limit). On expiration, returned future completes with
+     *                {@link InterruptedByTimeoutException}.
+     * @return a future holding the number of bytes read, or -1 if port was closed.
+     */
+    public CompletableFuture<Integer> readAsync(ByteBuffer dst, long timeout, TimeUnit unit) {
+        if (dst == null || unit == null)
+            throw new NullPointerException();
+
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("Read-only buffer");
+
+        Operation operation = new Operation();
+        if (!pendingRead.compareAndSet(null, operation))
+            throw new ReadPendingException();
+
+        if (!dst.hasRemaining()) {
+            operation.claim();
+            pendingRead.set(null);
+            operation.finish(0, null);
+            return operation;
+        }
+
+        AtomicReference<SerialPortDispatcher.Registration> keyRef = new AtomicReference<>();
+        operation.cleanup = () -> {
+            SerialPortDispatcher.Registration key = keyRef.get();
+            if (key != null)
+                key.cancel();
+
+            pendingRead.compareAndSet(operation, null);
+        };
+
+        try {
+            keyRef.set(SerialPortDispatcher.getInstance().register(serialPort, (port, error) -> {
+                if (operation.isDone())
+                    return false;
+
+                if (error == null && port.isOpen() && port.inputStream.available() == 0)
+                    return true; // Data was consumed by someone else: keep waiting
+
+                if (!operation.claim())
+                    return false;
+
+                Integer result = null;
+                if (error == null) {
+                    try {
+                        result = port.isOpen() ? port.getChannel().read(dst) : -1;
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+
+                operation.finish(result, error);
+                return false;
+            }, readExecutor));
+        } catch (RuntimeException e) {
+            pendingRead.set(null);
+            throw e;
+        }
+
+        if (operation.isDone())
+            keyRef.get().cancel(); // Completed before key was known
+
+        operation.scheduleTimeout(timeout, unit);
+
+        return operation;
+    }
+
+    /**
+     * Writes a sequence of bytes from given buffer to the port.
+     *
+     * @param timeout maximum time the write may wait before starting (zero for no limit). On expiration, returned
+     *                future completes with {@link InterruptedByTimeoutException}.
+     * @return a future holding the number of bytes written.
+     */
+    public CompletableFuture<Integer> writeAsync(ByteBuffer src, long timeout, TimeUnit unit) {
+        if (src == null || unit == null)
+            throw new NullPointerException();
+
+        Operation operation = new Operation();
+        if (!pendingWrite.compareAndSet(null, operation))
+            throw new WritePendingException();
+
+        operation.cleanup = () -> pendingWrite.compareAndSet(operation, null);
+
+        try {
+            writeExecutor.execute(() -> {
+                if (!operation.claim())
+                    return;
+
+                Integer result = null;
+                Throwable error = null;
+                try {
+                    result = serialPort.getChannel().write(src);
+                } catch (IOException | RuntimeException e) {
+                    error = e;
+                }
+
+                operation.finish(result, error);
+            });
+        } catch (RejectedExecutionException e) {
+            pendingWrite.set(null);
+            throw e;
+        }
+
+        operation.scheduleTimeout(timeout, unit);
+        return operation;
+    }
+
+    @Override
+    public <A> void read(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        requireHandler(handler); // Checked before the read starts, so no data is consumed on behalf of nobody
+        notify(readAsync(dst, 0, TimeUnit.MILLISECONDS), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> read(ByteBuffer dst) {
+        return readAsync(dst, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public <A> void write(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        requireHandler(handler);
+        notify(writeAsync(src, 0, TimeUnit.MILLISECONDS), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> write(ByteBuffer src) {
+        return writeAsync(src, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return serialPort.isOpen();
+    }
+
+    /** Closes the underlying port. Pending reads complete with -1 (end-of-stream). */
+    @Override
+    public void close() throws IOException {
+        serialPort.close();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+class SerialPortChannel implements ByteChannel {
+    private static final int STAGING_BUFFER_MAX_LEN = 8192;
+
+    private final SerialPort serialPort;
+    private final ReentrantLock readLock  = new ReentrantLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Staging buffers are used only for buffers without an accessible backing array (e.g. direct buffers), since the
+    // native interface operates on java arrays. They are allocated on demand and reused across calls.
+    private byte[] readStagingBuffer;
+    private byte[] writeStagingBuffer;
+
+    SerialPortChannel(SerialPort serialPort) {
+        this.serialPort = serialPort;
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int len) {
+        len = Math.min(len, STAGING_BUFFER_MAX_LEN);
+
+        if (buffer == null || buffer.length < len)
+            return new byte[len];
+
+        return buffer;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return serialPort.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serialPort.close();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (dst == null)
+            throw new NullPointerException("Null buffer");
+
+        readLock.lock();
+        try {
+            if (!dst.hasRemaining())
+                return 0;
+
+            if (dst.hasArray()) {
+                // Heap buffer: native layer writes directly into the backing array
+                int read = serialPort.getInputStream().read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+
+                if (read > 0)
+                    dst.position(dst.position() + read);
+
+                return read;
+            }
+
+            readStagingBuffer = ensureCapacity(readStagingBuffer, dst.remaining());
+            int read = serialPort.getInputStream().read(readStagingBuffer, 0, Math.min(readStagingBuffer.length, dst.remaining()));
+
+            if (read > 0)
+                dst.put(readStagingBuffer, 0, read);
+
+            return read;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (src == null)
+            throw new NullPointerException("Null buffer");
+
+        writeLock.lock();
+        try {
+            int len = src.remaining();
+
+            if (len == 0)
+                return 0;
+
+            if (src.hasArray()) {
+                // Heap buffer: native layer reads directly from the backing array
+                serialPort.getOutputStream().write(src.array(), src.arrayOffset() + src.position(), len);
+                src.position(src.limit());
+                return len;
+            }
+
+            writeStagingBuffer = ensureCapacity(writeStagingBuffer, len);
+            while (src.hasRemaining()) {
+                int chunkLen = Math.min(writeStagingBuffer.length, src.remaining());
+                src.get(writeStagingBuffer, 0, chunkLen);
+                serialPort.getOutputStream().write(writeStagingBuffer, 0, chunkLen);
+            }
+
+            return len;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
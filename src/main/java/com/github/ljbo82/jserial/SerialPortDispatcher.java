@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide selector thread dispatching port readiness to handlers running on an executor.
+ *
+ * <p>While handlers run, their port is excluded from selection, so a handler never runs concurrently with itself (and
+ * data is delivered in order) even on multithreaded executors.</p>
+ */
+class SerialPortDispatcher {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    private static final int IO_POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static SerialPortDispatcher instance;
+    private static ExecutorService ioExecutor;
+    private static ScheduledExecutorService scheduler;
+    private static ExecutorService blockingExecutor;
+
+    static synchronized SerialPortDispatcher getInstance() {
+        if (instance == null)
+            instance = new SerialPortDispatcher();
+
+        return instance;
+    }
+
+    /** Returns the small shared pool used to run handlers when no executor is given. */
+    static synchronized Executor getIoExecutor() {
+        if (ioExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            ioExecutor = Executors.newFixedThreadPool(IO_POOL_SIZE, r -> {
+                Thread thread = new Thread(r, String.format("jserial-io-%d", counter.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return ioExecutor;
+    }
+
+    /** Returns the shared daemon scheduler used for timed port operations. */
+    static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "jserial-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return scheduler;
+    }
+
+    /**
+     * Returns the (unbounded) pool running blocking native calls offloaded from virtual threads or from threads which
+     * must not block (e.g. the scheduler).
+     */
+    static synchronized Executor getBlockingExecutor() {
+        if (blockingExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            blockingExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, String.format("jserial-blocking-%d", counter.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return blockingExecutor;
+    }
+
+    /** Blocking port operation. */
+    interface IORunnable {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs a blocking operation on a platform thread, parking the calling (virtual) thread until it finishes, so the
+     * carrier thread is not held by a native call.
+     */
+    static void runOnPlatformThread(IORunnable runnable) throws IOException {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        getBlockingExecutor().execute(() -> {
+            try {
+                runnable.run();
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new IOException(cause);
+        }
+    }
+
+    /** Handles readiness of a port. */
+    interface Handler {
+        /**
+         * Called (on the handler executor) when the port is readable.
+         *
+         * @param error error raised while probing the port, if any.
+         * @return whether the port shall keep being watched.
+         */
+        boolean onReadable(SerialPort port, IOException error);
+    }
+
+    /** Handler registration. Cancel it to stop watching the port. */
+    static final class Registration {
+        private final Watch watch;
+        private final Handler handler;
+        private final Executor executor;
+
+        private boolean valid = true; // Guarded by the dispatcher registration map
+
+        private Registration(Watch watch, Handler handler, Executor executor) {
+            this.watch = watch;
+            this.handler = handler;
+            this.executor = executor;
+        }
+
+        void cancel() {
+            watch.remove(this);
+        }
+    }
+    // =================================================================================================================
+    // endregion
+
+    /**
+     * Registrations of a port. A port is registered only once with the selector, so its handlers (e.g. a data listener,
+     * a pending asynchronous read and parked virtual thread readers) share a single selection key.
+     */
+    private final class Watch {
+        final SerialPort port;
+        final List<Registration> registrations = new ArrayList<>(); // Guarded by 'watches'
+
+        SerialPortSelector.Key key; // Guarded by 'watches'
+        boolean dispatching; // Guarded by 'watches'
+
+        Watch(SerialPort port) {
+            this.port = port;
+        }
+
+        void remove(Registration registration) {
+            synchronized (watches) {
+                if (!registration.valid)
+                    return;
+
+                registration.valid = false;
+                registrations.remove(registration);
+                if (!dispatching)
+                    cancelIfIdle();
+            }
+        }
+
+        /** Cancels the selection key when there are no registrations left. Caller must hold 'watches' lock. */
+        boolean cancelIfIdle() {
+            if (!registrations.isEmpty())
+                return false;
+
+            watches.remove(port);
+            key.cancel();
+            return true;
+        }
+
+        /** Called when all handlers notified by a dispatch have finished. */
+        void dispatched() {
+            SerialPortSelector.Key key;
+            synchronized (watches) {
+                dispatching = false;
+                if (cancelIfIdle())
+                    return;
+
+                key = this.key;
+            }
+
+            if (key.isValid()) {
+                key.resume();
+            } else {
+                fail(this, new IOException("Port is no longer watched"));
+            }
+        }
+
+        /** Removes all registrations, returning the valid ones. */
+        List<Registration> clear() {
+            synchronized (watches) {
+                List<Registration> result = new ArrayList<>(registrations);
+                for (Registration registration : result) {
+                    registration.valid = false;
+                }
+
+                registrations.clear();
+                cancelIfIdle();
+                return result;
+            }
+        }
+    }
+
+    private final SerialPortSelector selector = new SerialPortSelector();
+    private final Map<SerialPort, Watch> watches = new HashMap<>(); // Guarded by 'watches'
+
+    private SerialPortDispatcher() {
+        Thread thread = new Thread(this::run, "jserial-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Cancels all registrations of a port and reports given failure to their handlers, so the application is not left
+     * waiting for data that will never be dispatched.
+     */
+    private void fail(Watch watch, Throwable cause) {
+        IOException error = cause instanceof IOException ? (IOException) cause : new IOException("Dispatcher failure", cause);
+        for (Registration registration : watch.clear()) {
+            Runnable task = () -> registration.handler.onReadable(watch.port, error);
+            try {
+                registration.executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                getIoExecutor().execute(task);
+            }
+        }
+    }
+
+    private void dispatch(SerialPortSelector.Key key) {
+        Watch watch = (Watch) key.attachment();
+        List<Registration> snapshot;
+        synchronized (watches) {
+            if (watch.cancelIfIdle())
+                return;
+
+            snapshot = new ArrayList<>(watch.registrations);
+            watch.dispatching = true;
+        }
+
+        key.suspend();
+
+        SerialPort port = watch.port;
+        IOException error = key.takeError();
+        AtomicInteger pending = new AtomicInteger(snapshot.size());
+        for (Registration registration : snapshot) {
+            Runnable task = () -> {
+                boolean keep = false;
+                try {
+                    keep = registration.handler.onReadable(port, error);
+                } finally {
+                    if (!keep)
+                        registration.cancel();
+
+                    if (pending.decrementAndGet() == 0)
+                        watch.dispatched();
+                }
+            };
+
+            try {
+                registration.executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                registration.cancel();
+                IOException failure = new IOException("Dispatcher failure", e);
+                getIoExecutor().execute(() -> {
+                    try {
+                        registration.handler.onReadable(port, failure);
+                    } finally {
+                        if (pending.decrementAndGet() == 0)
+                            watch.dispatched();
+                    }
+                });
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                try {
+                    selector.select();
+                } catch (RuntimeException e) {
+                    // Selection state is unknown: fail current registrations and keep serving new ones
+                    for (SerialPortSelector.Key key : selector.keys()) {
+                        fail((Watch) key.attachment(), e);
+                    }
+
+                    selector.selectedKeys().clear();
+                    continue;
+                }
+
+                Iterator<SerialPortSelector.Key> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SerialPortSelector.Key key = iterator.next();
+                    iterator.remove();
+
+                    try {
+                        if (key.isValid())
+                            dispatch(key);
+                    } catch (RuntimeException e) {
+                        fail((Watch) key.attachment(), e);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            // Dispatcher thread is dying (e.g. OutOfMemoryError): later registrations get a new dispatcher
+            synchronized (SerialPortDispatcher.class) {
+                if (instance == this)
+                    instance = null;
+            }
+
+            for (SerialPortSelector.Key key : selector.keys()) {
+                try {
+                    fail((Watch) key.attachment(), t);
+                } catch (Throwable ignored) {
+                    key.cancel();
+                }
+            }
+
+            selector.close();
+            throw t;
+        }
+    }
+
+    /**
+     * Starts watching a port. A port may have several registrations: all of them are notified when it is readable.
+     *
+     * @param executor executor running the handler ({@code null} to use the shared I/O pool).
+     * @return registration (cancel it to stop watching the port).
+     */
+    Registration register(SerialPort port, Handler handler, Executor executor) {
+        if (handler == null)
+            throw new NullPointerException("Null handler");
+
+        Registration registration;
+        synchronized (watches) {
+            Watch watch = watches.get(port);
+            if (watch == null) {
+                watch = new Watch(port);
+                watch.key = selector.register(port, watch); // Fails if read-ahead buffering is disabled
+                watches.put(port, watch);
+            }
+
+            registration = new Registration(watch, handler, executor == null ? getIoExecutor() : executor);
+            watch.registrations.add(registration);
+        }
+
+        selector.wakeup();
+        return registration;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached, event-driven view of the serial ports available in the system.
+ *
+ * <p>Port list is kept up-to-date by a background daemon thread, so queries do not cross the native interface and
+ * listeners are notified when ports are plugged/unplugged:</p>
+ * <ul>
+ *     <li>On linux, ports are enumerated from sysfs ({@code /sys/class/tty}), which also provides USB metadata, and
+ *     {@code /dev} is watched for changes (no native calls involved).</li>
+ *     <li>On other systems, native enumeration ({@link SerialPort#getPortNames()}) is polled periodically.</li>
+ * </ul>
+ */
+public final class SerialPortEnumerator {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    private static final File SYS_CLASS_TTY = new File("/sys/class/tty");
+    private static final File DEV_DIR = new File("/dev");
+
+    /** Max number of parent directories visited while looking for USB device attributes. */
+    private static final int USB_SEARCH_DEPTH = 8;
+
+    /** Interval between scans when native enumeration is polled. */
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+
+    /** Time waited for /dev changes to settle (e.g. permission fixes by udev) before re-scanning. */
+    private static final long SETTLE_MILLIS = 100;
+
+    private static SerialPortEnumerator instance;
+
+    /** Receives port plug/unplug notifications (called from the enumerator thread). */
+    public interface Listener {
+        void onPortAdded(SerialPortInfo port);
+
+        void onPortRemoved(SerialPortInfo port);
+    }
+
+    /** Returns the process-wide enumerator (the first call performs an initial scan and starts watching). */
+    public static synchronized SerialPortEnumerator getInstance() throws IOException {
+        if (instance == null) {
+            SerialPortEnumerator enumerator = new SerialPortEnumerator(SYS_CLASS_TTY.isDirectory() && DEV_DIR.isDirectory());
+            enumerator.start();
+            instance = enumerator;
+        }
+
+        return instance;
+    }
+
+    private static String readAttribute(File dir, String name) {
+        File file = new File(dir, name);
+        if (!file.isFile())
+            return null;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            return line == null ? null : line.trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int readHexAttribute(File dir, String name) {
+        String value = readAttribute(dir, name);
+        if (value == null)
+            return -1;
+
+        try {
+            return Integer.parseInt(value, 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static SerialPortInfo readSysfsEntry(File entry) {
+        File device = new File(entry, "device");
+        if (!device.exists())
+            return null; // Virtual terminal
+
+        // serial-core exposes every configured UART; type 0 (PORT_UNKNOWN) means there is no hardware behind it
+        if ("0".equals(readAttribute(entry, "type")))
+            return null;
+
+        File devFile = new File(DEV_DIR, entry.getName());
+        if (!devFile.exists())
+            return null;
+
+        String name = devFile.getPath();
+
+        File dir;
+        try {
+            dir = device.getCanonicalFile();
+        } catch (IOException e) {
+            return new SerialPortInfo(name);
+        }
+
+        for (int i = 0; dir != null && i < USB_SEARCH_DEPTH; i++, dir = dir.getParentFile()) {
+            if (new File(dir, "idVendor").isFile()) {
+                return new SerialPortInfo(
+                    name,
+                    readHexAttribute(dir, "idVendor"),
+                    readHexAttribute(dir, "idProduct"),
+                    readAttribute(dir, "serial"),
+                    readAttribute(dir, "manufacturer"),
+                    readAttribute(dir, "product")
+                );
+            }
+        }
+
+        return new SerialPortInfo(name);
+    }
+
+    private static Map<String, SerialPortInfo> scanSysfs() {
+        Map<String, SerialPortInfo> ports = new LinkedHashMap<>();
+
+        File[] entries = SYS_CLASS_TTY.listFiles();
+        if (entries != null) {
+            Arrays.sort(entries);
+            for (File entry : entries) {
+                SerialPortInfo info = readSysfsEntry(entry);
+                if (info != null)
+                    ports.put(info.getName(), info);
+            }
+        }
+
+        return ports;
+    }
+
+    private static Map<String, SerialPortInfo> scanNative() throws IOException {
+        Map<String, SerialPortInfo> ports = new LinkedHashMap<>();
+
+        for (String name : SerialPort.getPortNames())
+            ports.put(name, new SerialPortInfo(name));
+
+        return ports;
+    }
+    // =================================================================================================================
+    // endregion
+
+    private final boolean sysfs;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Map<String, SerialPortInfo> ports = Collections.emptyMap();
+
+    private SerialPortEnumerator(boolean sysfs) {
+        this.sysfs = sysfs;
+    }
+
+    private void start() throws IOException {
+        WatchService watchService = null;
+        if (sysfs) {
+            watchService = FileSystems.getDefault().newWatchService();
+            DEV_DIR.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+
+        ports = Collections.unmodifiableMap(sysfs ? scanSysfs() : scanNative());
+
+        WatchService finalWatchService = watchService;
+        Thread thread = new Thread(() -> {
+            if (finalWatchService != null) {
+                watch(finalWatchService);
+            } else {
+                poll();
+            }
+        }, "jserial-enumerator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(WatchService watchService) {
+        try {
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                WatchKey key = watchService.take();
+
+                // Coalesces bursts of events (a single adapter usually creates several nodes)
+                do {
+                    key.pollEvents();
+                    key.reset();
+                } while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+
+                update(scanSysfs());
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private void poll() {
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                update(scanNative());
+            } catch (IOException | RuntimeException ignored) {
+                // Keeps last known list
+            }
+        }
+    }
+
+    private void update(Map<String, SerialPortInfo> current) {
+        Map<String, SerialPortInfo> previous = ports;
+        ports = Collections.unmodifiableMap(current);
+
+        for (SerialPortInfo info : previous.values()) {
+            if (!info.equals(current.get(info.getName()))) {
+                for (Listener listener : listeners)
+                    fireEvent(listener, info, false);
+            }
+        }
+
+        for (SerialPortInfo info : current.values()) {
+            if (!info.equals(previous.get(info.getName()))) {
+                for (Listener listener : listeners)
+                    fireEvent(listener, info, true);
+            }
+        }
+    }
+
+    private static void fireEvent(Listener listener, SerialPortInfo info, boolean added) {
+        try {
+            if (added) {
+                listener.onPortAdded(info);
+            } else {
+                listener.onPortRemoved(info);
+            }
+        } catch (RuntimeException ignored) {
+            // A misbehaving listener must not stop enumeration
+        }
+    }
+
+    /** Returns a snapshot of available ports. */
+    public List<SerialPortInfo> getPorts() {
+        return Collections.unmodifiableList(new ArrayList<>(ports.values()));
+    }
+
+    /** Returns the names of available ports (cached equivalent of {@link SerialPort#getPortNames()}). */
+    public String[] getPortNames() {
+        return ports.keySet().toArray(new String[0]);
+    }
+
+    /** Returns information about given port, or {@code null} if there is no such port. */
+    public SerialPortInfo getPort(String name) {
+        return ports.get(name);
+    }
+
+    public void addListener(Listener listener) {
+        if (listener == null)
+            throw new NullPointerException("Null listener");
+
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
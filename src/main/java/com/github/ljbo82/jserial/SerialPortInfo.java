@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import java.util.Objects;
+
+/**
+ * Describes a serial port available in the system.
+ *
+ * <p>USB metadata is available only for USB adapters on platforms supporting it (currently linux). Absent numeric
+ * fields hold -1 and absent string fields hold {@code null}.</p>
+ */
+public final class SerialPortInfo {
+    private final String name;
+    private final int usbVendorId;
+    private final int usbProductId;
+    private final String usbSerialNumber;
+    private final String usbManufacturer;
+    private final String usbProduct;
+
+    SerialPortInfo(String name) {
+        this(name, -1, -1, null, null, null);
+    }
+
+    SerialPortInfo(String name, int usbVendorId, int usbProductId, String usbSerialNumber, String usbManufacturer, String usbProduct) {
+        if (name == null)
+            throw new NullPointerException("Null name");
+
+        this.name = name;
+        this.usbVendorId = usbVendorId;
+        this.usbProductId = usbProductId;
+        this.usbSerialNumber = usbSerialNumber;
+        this.usbManufacturer = usbManufacturer;
+        this.usbProduct = usbProduct;
+    }
+
+    /** Returns the port name (as accepted by {@link SerialPort#SerialPort(String)}). */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isUsb() {
+        return usbVendorId >= 0;
+    }
+
+    public int getUsbVendorId() {
+        return usbVendorId;
+    }
+
+    public int getUsbProductId() {
+        return usbProductId;
+    }
+
+    public String getUsbSerialNumber() {
+        return usbSerialNumber;
+    }
+
+    public String getUsbManufacturer() {
+        return usbManufacturer;
+    }
+
+    public String getUsbProduct() {
+        return usbProduct;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof SerialPortInfo))
+            return false;
+
+        SerialPortInfo other = (SerialPortInfo) o;
+        return name.equals(other.name)
+            && usbVendorId == other.usbVendorId
+            && usbProductId == other.usbProductId
+            && Objects.equals(usbSerialNumber, other.usbSerialNumber)
+            && Objects.equals(usbManufacturer, other.usbManufacturer)
+            && Objects.equals(usbProduct, other.usbProduct);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, usbVendorId, usbProductId, usbSerialNumber, usbManufacturer, usbProduct);
+    }
+
+    @Override
+    public String toString() {
+        if (!isUsb())
+            return name;
+
+        return String.format("%s [USB %04x:%04x%s]", name, usbVendorId, usbProductId, usbSerialNumber == null ? "" : String.format(" S/N %s", usbSerialNumber));
+    }
+}
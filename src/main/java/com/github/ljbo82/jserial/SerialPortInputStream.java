@@ -17,14 +17,474 @@ package com.github.ljbo82.jserial;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 class SerialPortInputStream extends InputStream {
+    /*pp*/  static final int DEFAULT_BUFFER_SIZE = 1024;
+
     private static final byte[] SKIP_BUFFER = new byte[1204];
 
+    private static final long PORT_TIMEOUT = -1; // Reads honor port read timeout
+
     private final SerialPort serialPort;
+    private final ReentrantLock lock;
+    private final byte[] singleByteBuffer = new byte[1];
+
+    // Read-ahead buffer (null when buffering is disabled). Guarded by port read lock.
+    private byte[] readAheadBuffer;
+
+    // Array holding read-ahead data: the read-ahead buffer itself, or a temporary one holding data given back by a
+    // deadline-based read larger than the read-ahead buffer (see giveBack()). Guarded by port read lock.
+    private byte[] buffer;
+    private int bufferPos;
+    private int bufferCount;
+
+    private int registrations; // Selector registrations. Guarded by 'this'
 
     public SerialPortInputStream(SerialPort serialPort) {
+        this(serialPort, DEFAULT_BUFFER_SIZE);
+    }
+
+    SerialPortInputStream(SerialPort serialPort, int bufferSize) {
         this.serialPort = serialPort;
+        this.lock = serialPort.readLock;
+        setBufferSize(bufferSize);
+    }
+
+    synchronized void setBufferSize(int bufferSize) {
+        if (bufferSize < 0)
+            throw new IllegalArgumentException("Negative buffer size");
+
+        if (bufferSize == 0 && registrations > 0)
+            throw new IllegalStateException("Cannot disable read-ahead buffering while port is registered with a selector");
+
+        lock.lock();
+        try {
+            int buffered = bufferCount - bufferPos;
+            if (buffered > bufferSize)
+                throw new IllegalStateException(String.format("Cannot shrink buffer below buffered data length (%d)", buffered));
+
+            byte[] newBuffer = bufferSize == 0 ? null : new byte[bufferSize];
+            if (buffered > 0)
+                System.arraycopy(buffer, bufferPos, newBuffer, 0, buffered);
+
+            readAheadBuffer = newBuffer;
+            buffer = newBuffer;
+            bufferPos = 0;
+            bufferCount = buffered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getBufferSize() {
+        lock.lock();
+        try {
+            return readAheadBuffer == null ? 0 : readAheadBuffer.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records a selector registration (selectors need read-ahead buffering to detect readiness). */
+    synchronized void addRegistration() {
+        if (readAheadBuffer == null)
+            throw new IllegalArgumentException("Read-ahead buffering is disabled for port");
+
+        registrations++;
+    }
+
+    synchronized void removeRegistration() {
+        registrations--;
+    }
+
+    /** Discards any read-ahead data. Caller must hold port read lock. */
+    void discardBuffer() {
+        buffer = readAheadBuffer;
+        bufferPos = 0;
+        bufferCount = 0;
+    }
+
+    /**
+     * Reads a burst of data from the port into the read-ahead buffer.
+     *
+     * @return the number of bytes read from the port (zero if a timed read expires), or -1 on EOS.
+     */
+    private int fill(long timeoutNanos) throws IOException {
+        int mRead = nativeRead(buffer, 0, buffer.length, timeoutNanos);
+
+        if (mRead > 0) {
+            bufferPos = 0;
+            bufferCount = mRead;
+        }
+
+        return mRead;
+    }
+
+    /**
+     * Makes room in read-ahead buffer for at least {@code capacity} bytes (counting buffered ones, which must be fewer),
+     * moving buffered data to its start as needed. Capacity must not exceed the read-ahead buffer size. Caller must hold
+     * port read lock.
+     */
+    private void ensureCapacity(int capacity) {
+        if (buffer == readAheadBuffer && bufferPos + capacity <= buffer.length)
+            return;
+
+        int buffered = bufferCount - bufferPos;
+        System.arraycopy(buffer, bufferPos, readAheadBuffer, 0, buffered);
+        buffer = readAheadBuffer;
+        bufferPos = 0;
+        bufferCount = buffered;
+    }
+
+    /**
+     * Makes given data (followed by {@code extraByte}, unless negative) the read-ahead data, so it is not consumed by a
+     * read that did not complete. A temporary buffer is used if data does not fit the read-ahead buffer (or buffering
+     * is disabled). Caller must hold port read lock, with no read-ahead data.
+     */
+    private void giveBack(byte[] b, int off, int len, int extraByte) {
+        int total = extraByte < 0 ? len : len + 1;
+        if (total == 0)
+            return;
+
+        buffer = readAheadBuffer != null && total <= readAheadBuffer.length ? readAheadBuffer : new byte[total];
+        System.arraycopy(b, off, buffer, 0, len);
+        if (extraByte >= 0)
+            buffer[len] = (byte) extraByte;
+
+        bufferPos = 0;
+        bufferCount = total;
+    }
+
+    private void giveBack(byte[] b, int off, int len) {
+        giveBack(b, off, len, -1);
+    }
+
+    /** Checks whether a read needing given capacity bypasses the read-ahead buffer. */
+    private boolean isDirect(int capacity) {
+        return readAheadBuffer == null || capacity > readAheadBuffer.length;
+    }
+
+    /**
+     * Appends data received until given deadline to read-ahead buffer. Caller must hold port read lock.
+     *
+     * @return number of bytes appended, -1 on EOS or {@link SerialPort#TIMED_OUT}.
+     */
+    private int append(long deadline) throws IOException {
+        int mRead = serialPort.nativeTryRead(buffer, bufferCount, buffer.length - bufferCount, Math.max(0, deadline - System.nanoTime()));
+
+        if (mRead < 0)
+            return -1;
+
+        if (mRead == 0)
+            return SerialPort.TIMED_OUT;
+
+        bufferCount += mRead;
+        return mRead;
+    }
+
+    private int readUntilLocked(byte delimiter, byte[] b, int off, int maxLen, long timeoutNanos) throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+
+        int scanned = 0;
+        while (true) {
+            int limit = Math.min(bufferCount - bufferPos, maxLen + 1);
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[bufferPos + i] == delimiter) {
+                    System.arraycopy(buffer, bufferPos, b, off, i);
+                    bufferPos += i + 1;
+                    return i;
+                }
+            }
+
+            if (limit > maxLen)
+                return SerialPort.LIMIT_EXCEEDED;
+
+            if (isDirect(maxLen + 1))
+                return readUntilDirect(delimiter, b, off, maxLen, deadline);
+
+            scanned = limit;
+            ensureCapacity(maxLen + 1);
+
+            int mRead = append(deadline);
+            if (mRead < 0)
+                return mRead;
+        }
+    }
+
+    /**
+     * Reads data up to given delimiter directly into given array (read-ahead data, which holds no delimiter, is moved
+     * into it first). Transport reads are limited to the read-ahead buffer size (one byte if buffering is disabled), so
+     * bytes following the delimiter always fit back into the read-ahead buffer. Caller must hold port read lock.
+     */
+    private int readUntilDirect(byte delimiter, byte[] b, int off, int maxLen, long deadline) throws IOException {
+        int n = bufferCount - bufferPos;
+        if (n > 0)
+            System.arraycopy(buffer, bufferPos, b, off, n);
+
+        discardBuffer();
+
+        int chunk = readAheadBuffer == null ? 1 : readAheadBuffer.length;
+        while (true) {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+
+            // Byte following maxLen data bytes is either the delimiter or proof the limit was exceeded
+            int mRead = n < maxLen
+                    ? serialPort.nativeTryRead(b, off + n, Math.min(chunk, maxLen - n), remaining)
+                    : serialPort.nativeTryRead(singleByteBuffer, 0, 1, remaining);
+
+            if (mRead <= 0) {
+                giveBack(b, off, n);
+                return mRead < 0 ? -1 : SerialPort.TIMED_OUT;
+            }
+
+            if (n == maxLen) {
+                if (singleByteBuffer[0] == delimiter)
+                    return maxLen;
+
+                giveBack(b, off, n, singleByteBuffer[0] & 0xff);
+                return SerialPort.LIMIT_EXCEEDED;
+            }
+
+            for (int i = n; i < n + mRead; i++) {
+                if (b[off + i] == delimiter) {
+                    giveBack(b, off + i + 1, n + mRead - i - 1);
+                    return i;
+                }
+            }
+
+            n += mRead;
+        }
+    }
+
+    private int readFullyLocked(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+
+        while (bufferCount - bufferPos < len) {
+            if (isDirect(len))
+                return readFullyDirect(b, off, len, deadline);
+
+            ensureCapacity(len);
+
+            int mRead = append(deadline);
+            if (mRead < 0)
+                return mRead;
+        }
+
+        System.arraycopy(buffer, bufferPos, b, off, len);
+        bufferPos += len;
+        return len;
+    }
+
+    /**
+     * Reads data directly into given array (read-ahead data is moved into it first). Caller must hold port read lock.
+     */
+    private int readFullyDirect(byte[] b, int off, int len, long deadline) throws IOException {
+        int n = bufferCount - bufferPos;
+        if (n > 0)
+            System.arraycopy(buffer, bufferPos, b, off, n);
+
+        discardBuffer();
+
+        while (n < len) {
+            int mRead = serialPort.nativeTryRead(b, off + n, len - n, Math.max(0, deadline - System.nanoTime()));
+            if (mRead <= 0) {
+                giveBack(b, off, n);
+                return mRead < 0 ? -1 : SerialPort.TIMED_OUT;
+            }
+
+            n += mRead;
+        }
+
+        return len;
+    }
+
+    /** Commits a deadline-based read event. */
+    private void commitRead(Object event, int mRead) {
+        if (mRead == SerialPort.TIMED_OUT) {
+            JfrEvents.commitTimeout(event, serialPort.getName());
+        } else if (mRead == SerialPort.LIMIT_EXCEEDED) {
+            JfrEvents.commitLimitExceeded(event, serialPort.getName());
+        } else {
+            JfrEvents.commit(event, serialPort.getName(), mRead, null);
+        }
+    }
+
+    /**
+     * Parks the calling virtual thread until the port is readable (see {@link #awaitReadable(long)}), before a
+     * deadline-based read.
+     *
+     * @return the remaining time, or -1 if timeout expired.
+     */
+    private long awaitReadableBefore(long timeoutNanos) throws IOException {
+        long start = System.nanoTime();
+        if (!awaitReadable(timeoutNanos)) {
+            serialPort.getMetrics().onTimeout();
+            return -1;
+        }
+
+        return Math.max(0, timeoutNanos - (System.nanoTime() - start));
+    }
+
+    /** See {@link SerialPort#readUntil(byte, byte[], int, int, long)}. */
+    int readUntil(byte delimiter, byte[] b, int off, int maxLen, long timeoutNanos) throws IOException {
+        if (b == null)
+            throw new NullPointerException("Null buffer");
+
+        if (off < 0 || maxLen < 0 || maxLen > b.length - off)
+            throw new IndexOutOfBoundsException();
+
+        if (timeoutNanos < 0)
+            throw new IllegalArgumentException("Negative timeout");
+
+        Object event = JfrEvents.begin(JfrEventType.READ);
+        try {
+            if (VirtualThreads.isCurrentThreadVirtual()) {
+                // Waits for data to start arriving without pinning the carrier thread (as read() does)
+                timeoutNanos = awaitReadableBefore(timeoutNanos);
+                if (timeoutNanos < 0) {
+                    JfrEvents.commitTimeout(event, serialPort.getName());
+                    return SerialPort.TIMED_OUT;
+                }
+            }
+
+            int mRead;
+            serialPort.lockRead();
+            try {
+                mRead = readUntilLocked(delimiter, b, off, maxLen, timeoutNanos);
+            } finally {
+                serialPort.unlockRead();
+            }
+
+            commitRead(event, mRead);
+            return mRead;
+        } catch (IOException e) {
+            JfrEvents.commit(event, serialPort.getName(), 0, e);
+            throw e;
+        }
+    }
+
+    /** See {@link SerialPort#readFully(byte[], int, int, long)}. */
+    int readFully(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        if (b == null)
+            throw new NullPointerException("Null buffer");
+
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+
+        if (timeoutNanos < 0)
+            throw new IllegalArgumentException("Negative timeout");
+
+        if (len == 0)
+            return 0;
+
+        Object event = JfrEvents.begin(JfrEventType.READ);
+        try {
+            if (VirtualThreads.isCurrentThreadVirtual()) {
+                // Waits for data to start arriving without pinning the carrier thread (as read() does)
+                timeoutNanos = awaitReadableBefore(timeoutNanos);
+                if (timeoutNanos < 0) {
+                    JfrEvents.commitTimeout(event, serialPort.getName());
+                    return SerialPort.TIMED_OUT;
+                }
+            }
+
+            int mRead;
+            serialPort.lockRead();
+            try {
+                mRead = readFullyLocked(b, off, len, timeoutNanos);
+            } finally {
+                serialPort.unlockRead();
+            }
+
+            commitRead(event, mRead);
+            return mRead;
+        } catch (IOException e) {
+            JfrEvents.commit(event, serialPort.getName(), 0, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Fills the read-ahead buffer with data already received by the port, without blocking.
+     *
+     * @return the number of buffered bytes, or -1 on EOS. Zero is returned if there is no data or if another thread is
+     * reading from the port.
+     */
+    int poll() throws IOException {
+        if (!lock.tryLock())
+            return 0;
+
+        try {
+            if (bufferPos < bufferCount)
+                return bufferCount - bufferPos;
+
+            discardBuffer();
+            if (buffer == null)
+                throw new IllegalStateException("Read-ahead buffering is disabled");
+
+            int mRead = serialPort.nativePoll(buffer, 0, buffer.length);
+            if (mRead > 0) {
+                bufferPos = 0;
+                bufferCount = mRead;
+            }
+
+            return mRead;
+        } finally {
+            serialPort.unlockRead();
+        }
+    }
+
+    /**
+     * Parks the calling (virtual) thread until the port is readable, honoring port read timeout. See
+     * {@link #awaitReadable(long)}.
+     */
+    private void awaitReadable() throws IOException {
+        if (!awaitReadable(TimeUnit.MILLISECONDS.toNanos(serialPort.getReadTimeout()))) {
+            serialPort.getMetrics().onTimeout();
+            throw new SerialPort.TimeoutException();
+        }
+    }
+
+    /**
+     * Parks the calling (virtual) thread until the port is readable, so the carrier thread is not held by a blocking
+     * native read. Port readiness is watched by the process-wide dispatcher.
+     *
+     * @return false if timeout expired.
+     */
+    private boolean awaitReadable(long timeoutNanos) throws IOException {
+        if (timeoutNanos == 0 || available() > 0)
+            return true; // Read will not block
+
+        // Port selection key is shared with other waiters and with any data listener or asynchronous read
+        CompletableFuture<Void> readable = new CompletableFuture<>();
+        SerialPortDispatcher.Registration registration;
+        try {
+            registration = SerialPortDispatcher.getInstance().register(serialPort, (port, error) -> {
+                readable.complete(null);
+                return false;
+            }, Runnable::run);
+        } catch (IllegalArgumentException e) {
+            return true; // Readiness cannot be detected without read-ahead buffering: fall back to a blocking read
+        }
+
+        try {
+            readable.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (java.util.concurrent.TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            registration.cancel();
+        }
     }
 
     @Override
@@ -32,29 +492,124 @@ class SerialPortInputStream extends InputStream {
         serialPort.close();
     }
 
+    private int nativeRead(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        if (timeoutNanos == PORT_TIMEOUT)
+            return serialPort.nativeRead(b, off, len);
+
+        return serialPort.nativeTryRead(b, off, len, timeoutNanos);
+    }
+
+    private int readLocked(byte[] b, int off, int len) throws IOException {
+        return readLocked(b, off, len, PORT_TIMEOUT);
+    }
+
+    /**
+     * Reads data serving it from read-ahead buffer when possible. Caller must hold port read lock.
+     *
+     * @param timeoutNanos maximum wait time or {@link #PORT_TIMEOUT}.
+     * @return number of bytes read (zero if a timed read expires), or -1 on EOS.
+     */
+    private int readLocked(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        int buffered = bufferCount - bufferPos;
+        if (buffered == 0) {
+            discardBuffer();
+
+            // Large reads (or disabled buffering) bypass the read-ahead buffer
+            if (buffer == null || len >= buffer.length)
+                return nativeRead(b, off, len, timeoutNanos);
+
+            int mRead = fill(timeoutNanos);
+            if (mRead <= 0)
+                return mRead;
+
+            buffered = mRead;
+        }
+
+        int n = Math.min(buffered, len);
+        System.arraycopy(buffer, bufferPos, b, off, n);
+        bufferPos += n;
+        return n;
+    }
+
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
+        if (b == null)
+            throw new NullPointerException("Null buffer");
+
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+
+        if (len == 0)
+            return 0;
+
+        Object event = JfrEvents.begin(JfrEventType.READ);
         try {
-            serialPort.semaphore.acquire();
+            if (VirtualThreads.isCurrentThreadVirtual())
+                awaitReadable();
+
+            int mRead;
+            serialPort.lockRead();
+            try {
+                mRead = readLocked(b, off, len);
+            } finally {
+                serialPort.unlockRead();
+            }
+
+            JfrEvents.commit(event, serialPort.getName(), mRead, null);
+            return mRead;
+        } catch (IOException e) {
+            JfrEvents.commit(event, serialPort.getName(), 0, e);
+            throw e;
+        }
+    }
 
-            // SerialPort.close() cannot be called simultaneously if this point was reached
+    /** See {@link SerialPort#tryRead(byte[], int, int, long)}. */
+    int tryRead(byte[] b, int off, int len, long timeoutNanos) throws IOException {
+        if (b == null)
+            throw new NullPointerException("Null buffer");
 
-            if (serialPort.nativeSerialPort == SerialPort.CLOSED_NATIVE_PORT) {
-                // Port is closed (EOS)
-                serialPort.semaphore.release();
-                return -1;
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+
+        if (timeoutNanos < 0)
+            throw new IllegalArgumentException("Negative timeout");
+
+        if (len == 0)
+            return 0;
+
+        Object event = JfrEvents.begin(JfrEventType.READ);
+        try {
+            if (VirtualThreads.isCurrentThreadVirtual()) {
+                long start = System.nanoTime();
+                if (!awaitReadable(timeoutNanos)) {
+                    serialPort.getMetrics().onTimeout();
+                    JfrEvents.commitTimeout(event, serialPort.getName());
+                    return SerialPort.TIMED_OUT;
+                }
+
+                timeoutNanos = Math.max(0, timeoutNanos - (System.nanoTime() - start));
             }
 
-            int mRead = NativeSerialPort.read(serialPort.nativeSerialPort, b, off, len);
-            serialPort.semaphore.release();
+            int mRead;
+            serialPort.lockRead();
+            try {
+                mRead = readLocked(b, off, len, timeoutNanos);
+            } finally {
+                serialPort.unlockRead();
+            }
 
-            if (mRead < 0) {
-                NativeSerialPort.throwNativeError();
+            if (mRead == 0) {
+                if (timeoutNanos == 0)
+                    serialPort.getMetrics().onTimeout(); // Timed waits record their expiry themselves
+
+                mRead = SerialPort.TIMED_OUT;
             }
 
+            commitRead(event, mRead);
             return mRead;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        } catch (IOException e) {
+            JfrEvents.commit(event, serialPort.getName(), 0, e);
+            throw e;
         }
     }
 
@@ -65,14 +620,54 @@ class SerialPortInputStream extends InputStream {
 
     @Override
     public int read() throws IOException {
-        byte[] singleByteBuffer = new byte[1];
+        Object event = JfrEvents.begin(JfrEventType.READ);
+        try {
+            int b = readByte();
+            JfrEvents.commit(event, serialPort.getName(), b < 0 ? b : 1, null);
+            return b;
+        } catch (IOException e) {
+            JfrEvents.commit(event, serialPort.getName(), 0, e);
+            throw e;
+        }
+    }
 
-        int mRead = read(singleByteBuffer);
+    private int readByte() throws IOException {
+        if (VirtualThreads.isCurrentThreadVirtual())
+            awaitReadable();
 
-        if (mRead < 0)
-            return mRead;
+        serialPort.lockRead();
+        try {
+            if (bufferPos < bufferCount)
+                return buffer[bufferPos++] & 0xff;
+
+            int mRead = readLocked(singleByteBuffer, 0, 1);
+
+            if (mRead < 0)
+                return -1;
+
+            if (mRead == 0)
+                throw new SerialPort.TimeoutException(); // A zero byte count must never be taken as a byte
 
-        return singleByteBuffer[0] & 0xff;
+            return singleByteBuffer[0] & 0xff;
+        } finally {
+            serialPort.unlockRead();
+        }
+    }
+
+    /**
+     * Returns the number of read-ahead bytes. This method never blocks: zero is returned while another thread is
+     * reading from the port.
+     */
+    @Override
+    public int available() {
+        if (!lock.tryLock())
+            return 0;
+
+        try {
+            return bufferCount - bufferPos;
+        } finally {
+            serialPort.unlockRead();
+        }
     }
 
     @Override
@@ -80,14 +675,23 @@ class SerialPortInputStream extends InputStream {
         long remaining = n;
         int read;
 
-        while (remaining > 0) {
-            read = read(SKIP_BUFFER);
+        serialPort.lockRead();
+        try {
+            int buffered = (int) Math.min(bufferCount - bufferPos, Math.max(remaining, 0));
+            bufferPos += buffered;
+            remaining -= buffered;
 
-            if (read <= 0) {
-                break;
-            }
+            while (remaining > 0) {
+                read = readLocked(SKIP_BUFFER, 0, (int) Math.min(SKIP_BUFFER.length, remaining));
 
-            remaining -= read;
+                if (read <= 0) {
+                    break;
+                }
+
+                remaining -= read;
+            }
+        } finally {
+            serialPort.unlockRead();
         }
 
         return n - remaining;
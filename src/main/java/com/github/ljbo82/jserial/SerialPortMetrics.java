@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * I/O metrics of a port (see {@link SerialPort#getMetrics()}).
+ *
+ * <p>Counters are striped ({@link LongAdder}), so updating them does not add contention to the I/O paths. Unless
+ * {@value #JMX_PROPERTY} system property is set to {@code false}, metrics are registered as a platform MBean
+ * ({@code com.github.ljbo82.jserial:type=SerialPort,name=<port name>}) while the port is open. If another instance of
+ * the same port is still registered (e.g. a port reopened before the previous instance was closed), the latest one
+ * replaces it.</p>
+ */
+public class SerialPortMetrics implements SerialPortMetricsMBean {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    public static final String JMX_PROPERTY = "jserial.jmx";
+
+    private static final String JMX_DOMAIN = "com.github.ljbo82.jserial";
+
+    /** Instances registered by this class, so a replaced instance does not unregister its replacement. */
+    private static final Map<ObjectName, SerialPortMetrics> REGISTERED = new HashMap<>(); // Guarded by itself
+
+    /** Log2 latency histogram. Bucket 0 holds latencies below 1 us, bucket i (i > 0) those in [2^(i-1), 2^i) us. */
+    private static final class Histogram {
+        static final int    BUCKETS           = 24;
+        static final int    FIRST_BOUND_SHIFT = 10; // First bucket upper bound: 1024 ns
+        static final long[] BOUNDS_NANOS;
+
+        static {
+            BOUNDS_NANOS = new long[BUCKETS - 1];
+            for (int i = 0; i < BOUNDS_NANOS.length; i++)
+                BOUNDS_NANOS[i] = 1L << (FIRST_BOUND_SHIFT + i);
+        }
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++)
+                buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            int bucket = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0) >>> FIRST_BOUND_SHIFT);
+            buckets[Math.min(bucket, BUCKETS - 1)].increment();
+        }
+
+        long[] snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] = buckets[i].sum();
+
+            return counts;
+        }
+
+        /** Returns the upper bound of the bucket holding given percentile (or -1 if there are no samples). */
+        long percentile(double percentile) {
+            long[] counts = snapshot();
+
+            long total = 0;
+            for (long count : counts)
+                total += count;
+
+            if (total == 0)
+                return -1;
+
+            long threshold = (long) Math.ceil(total * percentile);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                cumulative += counts[i];
+                if (cumulative >= threshold)
+                    return BOUNDS_NANOS[i];
+            }
+
+            return Long.MAX_VALUE;
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets)
+                bucket.reset();
+        }
+    }
+    // =================================================================================================================
+    // endregion
+
+    private final String portName;
+
+    private final LongAdder bytesRead    = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder readCalls    = new LongAdder();
+    private final LongAdder writeCalls   = new LongAdder();
+    private final LongAdder flushCalls   = new LongAdder();
+    private final LongAdder timeouts     = new LongAdder();
+    private final LongAdder errors       = new LongAdder();
+    private final LongAdder lockWait     = new LongAdder();
+
+    private final Histogram readLatency  = new Histogram();
+    private final Histogram writeLatency = new Histogram();
+
+    private ObjectName objectName; // Guarded by 'this'
+
+    SerialPortMetrics(String portName) {
+        this.portName = portName;
+    }
+
+    /**
+     * Registers this instance as a platform MBean, replacing a previous instance registered under the same name.
+     * Failures are ignored.
+     */
+    synchronized void register() {
+        if (objectName != null || "false".equals(System.getProperty(JMX_PROPERTY)))
+            return;
+
+        try {
+            ObjectName name = new ObjectName(String.format("%s:type=SerialPort,name=%s", JMX_DOMAIN, ObjectName.quote(portName)));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            synchronized (REGISTERED) {
+                try {
+                    server.registerMBean(this, name);
+                } catch (InstanceAlreadyExistsException e) {
+                    server.unregisterMBean(name);
+                    server.registerMBean(this, name);
+                }
+
+                REGISTERED.put(name, this);
+            }
+
+            objectName = name;
+        } catch (JMException | SecurityException ignored) {
+        }
+    }
+
+    synchronized void unregister() {
+        if (objectName == null)
+            return;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            synchronized (REGISTERED) {
+                if (REGISTERED.remove(objectName, this))
+                    server.unregisterMBean(objectName); // Not replaced by another instance meanwhile
+            }
+        } catch (JMException | SecurityException ignored) {
+        }
+
+        objectName = null;
+    }
+
+    void onRead(int bytes) {
+        readCalls.increment();
+
+        if (bytes > 0)
+            bytesRead.add(bytes);
+    }
+
+    void onReadCompleted(long nanos) {
+        readLatency.record(nanos);
+    }
+
+    void onWrite(int bytes, long nanos) {
+        writeCalls.increment();
+        bytesWritten.add(bytes);
+        writeLatency.record(nanos);
+    }
+
+    void onFlush() {
+        flushCalls.increment();
+    }
+
+    void onTimeout() {
+        timeouts.increment();
+    }
+
+    void onError() {
+        errors.increment();
+    }
+
+    void onLockWait(long nanos) {
+        lockWait.add(nanos);
+    }
+
+    @Override
+    public String getPortName() {
+        return portName;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getReadCalls() {
+        return readCalls.sum();
+    }
+
+    @Override
+    public long getWriteCalls() {
+        return writeCalls.sum();
+    }
+
+    @Override
+    public long getFlushCalls() {
+        return flushCalls.sum();
+    }
+
+    @Override
+    public double getAverageBytesPerRead() {
+        long calls = readCalls.sum();
+        return calls == 0 ? 0 : (double) bytesRead.sum() / calls;
+    }
+
+    @Override
+    public double getAverageBytesPerWrite() {
+        long calls = writeCalls.sum();
+        return calls == 0 ? 0 : (double) bytesWritten.sum() / calls;
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getLockWaitNanos() {
+        return lockWait.sum();
+    }
+
+    @Override
+    public long[] getLatencyHistogramBoundsNanos() {
+        return Histogram.BOUNDS_NANOS.clone();
+    }
+
+    @Override
+    public long[] getReadLatencyHistogram() {
+        return readLatency.snapshot();
+    }
+
+    @Override
+    public long[] getWriteLatencyHistogram() {
+        return writeLatency.snapshot();
+    }
+
+    @Override
+    public long getReadLatencyP50Nanos() {
+        return readLatency.percentile(0.5);
+    }
+
+    @Override
+    public long getReadLatencyP99Nanos() {
+        return readLatency.percentile(0.99);
+    }
+
+    @Override
+    public long getWriteLatencyP50Nanos() {
+        return writeLatency.percentile(0.5);
+    }
+
+    @Override
+    public long getWriteLatencyP99Nanos() {
+        return writeLatency.percentile(0.99);
+    }
+
+    @Override
+    public void reset() {
+        bytesRead.reset();
+        bytesWritten.reset();
+        readCalls.reset();
+        writeCalls.reset();
+        flushCalls.reset();
+        timeouts.reset();
+        errors.reset();
+        lockWait.reset();
+        readLatency.reset();
+        writeLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: read %d bytes (%d calls), wrote %d bytes (%d calls), %d timeouts, %d errors", portName, getBytesRead(), getReadCalls(), getBytesWritten(), getWriteCalls(), getTimeouts(), getErrors());
+    }
+}
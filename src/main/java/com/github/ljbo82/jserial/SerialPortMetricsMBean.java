@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+/**
+ * Management interface of {@link SerialPortMetrics}.
+ *
+ * <p>Latency histograms count operations per bucket, bucket upper bounds being given by
+ * {@link #getLatencyHistogramBoundsNanos()} (the last bucket is unbounded).</p>
+ */
+public interface SerialPortMetricsMBean {
+    String getPortName();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    /** Returns the number of transport (native) read calls. */
+    long getReadCalls();
+
+    /** Returns the number of transport (native) write calls. */
+    long getWriteCalls();
+
+    /** Returns the number of transport (native) flush calls. */
+    long getFlushCalls();
+
+    double getAverageBytesPerRead();
+
+    double getAverageBytesPerWrite();
+
+    long getTimeouts();
+
+    long getErrors();
+
+    /** Returns the total time spent waiting for port locks. */
+    long getLockWaitNanos();
+
+    long[] getLatencyHistogramBoundsNanos();
+
+    long[] getReadLatencyHistogram();
+
+    long[] getWriteLatencyHistogram();
+
+    long getReadLatencyP50Nanos();
+
+    long getReadLatencyP99Nanos();
+
+    long getWriteLatencyP50Nanos();
+
+    long getWriteLatencyP99Nanos();
+
+    void reset();
+}
@@ -17,14 +17,114 @@ package com.github.ljbo82.jserial;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 class SerialPortOutputStream extends OutputStream {
     private final SerialPort serialPort;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[] singleByteBuffer = new byte[1];
+
+    // Coalescing state. Guarded by 'lock'.
+    private FlushPolicy flushPolicy = FlushPolicy.unbuffered();
+    private byte[] buffer;
+    private int bufferCount;
+    private int bufferedWrites;
+    private ScheduledFuture<?> lingerTask;
+    private IOException lingerError;
+
+    private volatile long savedWrites;
 
     SerialPortOutputStream(SerialPort serialPort) {
         this.serialPort = serialPort;
     }
 
+    void setFlushPolicy(FlushPolicy flushPolicy) throws IOException {
+        if (flushPolicy == null)
+            throw new NullPointerException("Null flush policy");
+
+        lock.lock();
+        try {
+            drainBuffer();
+
+            this.flushPolicy = flushPolicy;
+            this.buffer = flushPolicy.getBufferSize() == 0 ? null : new byte[flushPolicy.getBufferSize()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    FlushPolicy getFlushPolicy() {
+        lock.lock();
+        try {
+            return flushPolicy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of native writes avoided by coalescing. */
+    long getSavedWrites() {
+        return savedWrites;
+    }
+
+    /**
+     * Sends buffered data (if any) to the port.
+     *
+     * <p>If the write fails, data is kept in the buffer (and sent again by the next drain) and the error is reported. A
+     * failure of a linger drain is reported by the next write or flush.</p>
+     */
+    void drainBuffer() throws IOException {
+        lock.lock();
+        try {
+            if (lingerTask != null) {
+                lingerTask.cancel(false);
+                lingerTask = null;
+            }
+
+            if (lingerError != null) {
+                IOException e = lingerError;
+                lingerError = null;
+                throw e;
+            }
+
+            if (bufferCount == 0)
+                return;
+
+            serialPort.nativeWrite(buffer, 0, bufferCount);
+            savedWrites += bufferedWrites - 1;
+            bufferCount = 0;
+            bufferedWrites = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onLingerExpired(ScheduledFuture<?>[] task) {
+        lock.lock();
+        try {
+            if (lingerTask != task[0])
+                return; // Buffer was drained in the meantime
+
+            lingerTask = null;
+            try {
+                drainBuffer();
+            } catch (IOException e) {
+                lingerError = e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleLinger() {
+        // Scheduler only times the linger: the drain (a blocking native write) runs on the blocking pool
+        ScheduledFuture<?>[] task = new ScheduledFuture<?>[1];
+        task[0] = SerialPortDispatcher.getScheduler().schedule(() -> SerialPortDispatcher.getBlockingExecutor().execute(() -> onLingerExpired(task)), flushPolicy.getMaxLingerMillis(), TimeUnit.MILLISECONDS);
+        lingerTask = task[0];
+    }
+
     @Override
     public void close() throws IOException {
         serialPort.close();
@@ -32,25 +132,53 @@ class SerialPortOutputStream extends OutputStream {
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+        if (b == null)
+            throw new NullPointerException("Null buffer");
+
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+
+        Object event = JfrEvents.begin(JfrEventType.WRITE);
         try {
-            serialPort.semaphore.acquire();
+            writeLocked(b, off, len);
+            JfrEvents.commit(event, serialPort.getName(), len, null);
+        } catch (IOException e) {
+            JfrEvents.commit(event, serialPort.getName(), 0, e);
+            throw e;
+        }
+    }
 
-            // SerialPort.close() cannot be called simultaneously if this point was reached
+    private void writeLocked(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            if (buffer == null) {
+                serialPort.nativeWrite(b, off, len);
+                return;
+            }
+
+            if (len > buffer.length - bufferCount)
+                drainBuffer();
 
-            if (serialPort.nativeSerialPort == SerialPort.CLOSED_NATIVE_PORT) {
-                // Port is closed
-                serialPort.semaphore.release();
-                throw new IOException("Port is closed");
+            if (len >= buffer.length) {
+                // Chunk does not fit into buffer at all
+                serialPort.nativeWrite(b, off, len);
+                return;
             }
 
-            boolean success = NativeSerialPort.write(serialPort.nativeSerialPort, b, off, len);
-            serialPort.semaphore.release();
+            if (lingerError != null)
+                drainBuffer(); // Reports pending error
+
+            System.arraycopy(b, off, buffer, bufferCount, len);
+            bufferCount += len;
+            bufferedWrites++;
 
-            if (!success) {
-                NativeSerialPort.throwNativeError();
+            if (flushPolicy.shouldFlush(bufferCount)) {
+                drainBuffer();
+            } else if (lingerTask == null && flushPolicy.getMaxLingerMillis() > 0) {
+                scheduleLinger();
             }
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -61,32 +189,25 @@ class SerialPortOutputStream extends OutputStream {
 
     @Override
     public void write(int i) throws IOException {
-        byte[] singleByteBuffer = new byte[1];
-        singleByteBuffer[0] = (byte)i;
-        write(singleByteBuffer);
+        lock.lock();
+        try {
+            singleByteBuffer[0] = (byte)i;
+            write(singleByteBuffer, 0, 1);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void flush() throws IOException {
+        Object event = JfrEvents.begin(JfrEventType.FLUSH);
         try {
-            serialPort.semaphore.acquire();
-
-            // SerialPort.close() cannot be called simultaneously if this point was reached
-
-            if (serialPort.nativeSerialPort == SerialPort.CLOSED_NATIVE_PORT) {
-                // Port is closed
-                serialPort.semaphore.release();
-                throw new IOException("Port is closed");
-            }
-
-            boolean success = NativeSerialPort.flush(serialPort.nativeSerialPort);
-            serialPort.semaphore.release();
-
-            if (!success) {
-                NativeSerialPort.throwNativeError();
-            }
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            drainBuffer();
+            serialPort.nativeFlush();
+            JfrEvents.commit(event, serialPort.getName(), 0, null);
+        } catch (IOException e) {
+            JfrEvents.commit(event, serialPort.getName(), 0, e);
+            throw e;
         }
     }
 }
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands out leases on open ports, so components using the same port share a single open (and configured) instance
+ * instead of opening, configuring and closing it over and over.
+ *
+ * <p>Ports are reference-counted: a port is opened by the first lease and closed once it has been idle (no leases) for
+ * a grace period, so a port handed over from one component to another is not reopened. A port may be leased by
+ * several shared holders or by a single exclusive holder. Exclusive acquisition waits for shared holders to release
+ * the port, and shared acquisition waits while an exclusive holder owns or awaits the port.</p>
+ *
+ * <p>Configuration given on acquisition is applied when the port is opened, or when it is acquired while not held
+ * (exclusive acquisitions always find the port in that state). A shared acquisition of a port held by others with a
+ * different configuration (including changes made by current holders) fails with {@link IllegalStateException}.</p>
+ *
+ * <p>Ports are opened and closed outside the registry locks, so a slow device does not stall acquisitions of other
+ * ports.</p>
+ */
+public final class SerialPortRegistry {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    private static final long DEFAULT_IDLE_GRACE_MILLIS = 2000;
+
+    private static SerialPortRegistry instance;
+
+    /** Opens ports on behalf of the registry. */
+    public interface Opener {
+        SerialPort open(String name, SerialConfig config) throws IOException;
+    }
+
+    /** Returns the process-wide registry (native ports, idle ports closed after two seconds). */
+    public static synchronized SerialPortRegistry getInstance() {
+        if (instance == null)
+            instance = new SerialPortRegistry(SerialPort::new, DEFAULT_IDLE_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+
+        return instance;
+    }
+
+    /** Registry entry of a port. Fields are guarded by the entry itself. */
+    private static final class Entry {
+        final String name;
+
+        SerialPort port;
+        boolean opening; // Port is being opened (outside the entry lock) by an acquisition
+        boolean removed; // Entry was removed from the registry (a new one is created by later acquisitions)
+        int shared;
+        boolean exclusive;
+        int exclusiveWaiters;
+        long idleDeadline; // Time (System.nanoTime()) when an idle port may be closed
+        ScheduledFuture<?> idleClose;
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        boolean isIdle() {
+            return shared == 0 && !exclusive;
+        }
+    }
+
+    /** Grants access to a leased port. Closing the lease releases it (the port itself must not be closed). */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final SerialPort port;
+        private final boolean exclusive;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Entry entry, SerialPort port, boolean exclusive) {
+            this.entry = entry;
+            this.port = port;
+            this.exclusive = exclusive;
+        }
+
+        public SerialPort getPort() {
+            return port;
+        }
+
+        public boolean isExclusive() {
+            return exclusive;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true))
+                release(this);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s lease on %s", exclusive ? "Exclusive" : "Shared", port);
+        }
+    }
+    // =================================================================================================================
+    // endregion
+
+    private final Opener opener;
+    private final long idleGraceMillis;
+    private final Map<String, Entry> entries = new HashMap<>(); // Guarded by 'this'
+
+    /**
+     * @param opener    opens ports on behalf of the registry.
+     * @param idleGrace time an idle port is kept open (zero closes it as soon as it becomes idle).
+     */
+    public SerialPortRegistry(Opener opener, long idleGrace, TimeUnit unit) {
+        if (opener == null || unit == null)
+            throw new NullPointerException();
+
+        if (idleGrace < 0)
+            throw new IllegalArgumentException("Negative grace period");
+
+        this.opener = opener;
+        this.idleGraceMillis = unit.toMillis(idleGrace);
+    }
+
+    /** Leases a port shared with other shared holders, opening it with given configuration if needed. */
+    public Lease acquire(String name, SerialConfig config) throws IOException {
+        return acquire(name, config, false, -1);
+    }
+
+    /**
+     * Leases a port shared with other shared holders, waiting at most given time while the port is exclusively held.
+     *
+     * @throws SerialPort.TimeoutException if port could not be leased in time.
+     */
+    public Lease acquire(String name, SerialConfig config, long timeout, TimeUnit unit) throws IOException {
+        return acquire(name, config, false, unit.toNanos(Math.max(timeout, 0)));
+    }
+
+    /** Leases a port exclusively, waiting for other holders to release it. */
+    public Lease acquireExclusive(String name, SerialConfig config) throws IOException {
+        return acquire(name, config, true, -1);
+    }
+
+    /**
+     * Leases a port exclusively, waiting at most given time for other holders to release it.
+     *
+     * @throws SerialPort.TimeoutException if port could not be leased in time.
+     */
+    public Lease acquireExclusive(String name, SerialConfig config, long timeout, TimeUnit unit) throws IOException {
+        return acquire(name, config, true, unit.toNanos(Math.max(timeout, 0)));
+    }
+
+    /** @param timeoutNanos maximum wait time, or a negative value to wait without limit. */
+    private Lease acquire(String name, SerialConfig config, boolean exclusive, long timeoutNanos) throws IOException {
+        if (name == null || config == null)
+            throw new NullPointerException();
+
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                entry = entries.computeIfAbsent(name, Entry::new);
+            }
+
+            Lease lease;
+            try {
+                lease = acquire(entry, config, exclusive, timeoutNanos);
+            } finally {
+                closeIfIdle(entry); // Acquisition may have failed leaving an idle entry behind
+            }
+
+            if (lease != null)
+                return lease;
+
+            // Entry was removed meanwhile: look it up again
+        }
+    }
+
+    /**
+     * Leases the port of given entry, opening it (outside the entry lock) if needed.
+     *
+     * @return the lease, or {@code null} if the entry was removed from the registry.
+     */
+    private Lease acquire(Entry entry, SerialConfig config, boolean exclusive, long timeoutNanos) throws IOException {
+        SerialPort port;
+        synchronized (entry) {
+            if (entry.removed)
+                return null;
+
+            await(entry, exclusive, timeoutNanos);
+            if (entry.removed)
+                return null;
+
+            if (entry.idleClose != null) {
+                entry.idleClose.cancel(false);
+                entry.idleClose = null;
+            }
+
+            boolean held = !entry.isIdle();
+            if (exclusive) {
+                entry.exclusive = true;
+            } else {
+                entry.shared++;
+            }
+
+            port = entry.port;
+            if (port != null && port.isOpen()) {
+                try {
+                    if (!config.equals(port.getConfig())) {
+                        // Configuration of a port used by other holders is not changed behind their back
+                        if (held)
+                            throw new IllegalStateException(String.format("Port is open with a different configuration: %s", port.getConfig()));
+
+                        port.config(config);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    cancel(entry, exclusive);
+                    throw e;
+                }
+
+                return new Lease(entry, port, exclusive);
+            }
+
+            entry.port = null;
+            entry.opening = true; // Ports closed behind the registry are replaced
+        }
+
+        try {
+            port = opener.open(entry.name, config);
+        } catch (IOException | RuntimeException e) {
+            synchronized (entry) {
+                entry.opening = false;
+                cancel(entry, exclusive);
+            }
+
+            throw e;
+        }
+
+        synchronized (entry) {
+            entry.port = port;
+            entry.opening = false;
+            entry.notifyAll();
+            return new Lease(entry, port, exclusive);
+        }
+    }
+
+    /** Undoes the lease count of a failed acquisition. Caller must hold the entry lock. */
+    private void cancel(Entry entry, boolean exclusive) {
+        if (exclusive) {
+            entry.exclusive = false;
+        } else {
+            entry.shared--;
+        }
+
+        entry.notifyAll();
+
+        if (entry.isIdle() && entry.port != null)
+            scheduleIdleClose(entry); // Idle close of an open port was cancelled by the acquisition
+    }
+
+    /** Starts the grace period of an idle entry. Caller must hold the entry lock. */
+    private void scheduleIdleClose(Entry entry) {
+        entry.idleDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(idleGraceMillis);
+        entry.idleClose = SerialPortDispatcher.getScheduler().schedule(
+            () -> closeIfIdle(entry), idleGraceMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /** Waits until the port can be leased in given mode. Caller must hold the entry lock. */
+    private static void await(Entry entry, boolean exclusive, long timeoutNanos) throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+
+        if (exclusive)
+            entry.exclusiveWaiters++;
+
+        try {
+            // Pending exclusive acquisitions take precedence over new shared ones, so they are not starved
+            while (exclusive ? !entry.isIdle() : entry.exclusive || entry.exclusiveWaiters > 0 || entry.opening) {
+                if (entry.removed)
+                    return;
+
+                long remaining = deadline - System.nanoTime();
+                if (timeoutNanos >= 0 && remaining <= 0)
+                    throw new SerialPort.TimeoutException();
+
+                try {
+                    if (timeoutNanos < 0) {
+                        entry.wait();
+                    } else {
+                        TimeUnit.NANOSECONDS.timedWait(entry, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        } finally {
+            if (exclusive) {
+                entry.exclusiveWaiters--;
+                entry.notifyAll(); // Shared acquisitions may have been waiting for this one
+            }
+        }
+    }
+
+    private void release(Lease lease) {
+        Entry entry = lease.entry;
+        synchronized (entry) {
+            if (lease.exclusive) {
+                entry.exclusive = false;
+            } else {
+                entry.shared--;
+            }
+
+            entry.notifyAll();
+
+            if (entry.isIdle())
+                scheduleIdleClose(entry);
+        }
+    }
+
+    /** Removes given entry (closing its port) if it is idle and nobody is about to use it. */
+    private void closeIfIdle(Entry entry) {
+        SerialPort port;
+        synchronized (entry) {
+            if (entry.removed || !entry.isIdle() || entry.exclusiveWaiters > 0)
+                return;
+
+            if (entry.port != null && entry.port.isOpen() && System.nanoTime() - entry.idleDeadline < 0)
+                return; // Grace period is not over yet
+
+            entry.removed = true; // Acquisitions which looked the entry up meanwhile will look it up again
+            entry.notifyAll();
+
+            port = entry.port;
+            entry.port = null;
+            entry.idleClose = null;
+        }
+
+        synchronized (this) {
+            if (entries.get(entry.name) == entry)
+                entries.remove(entry.name);
+        }
+
+        if (port != null) {
+            try {
+                port.close();
+            } catch (IOException ignored) {
+                // Close errors of idle ports cannot be reported
+            }
+        }
+    }
+
+    /** Returns whether given port is currently open in this registry (leased or within its grace period). */
+    public boolean isOpen(String name) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(name);
+        }
+
+        if (entry == null)
+            return false;
+
+        synchronized (entry) {
+            return entry.port != null && entry.port.isOpen();
+        }
+    }
+}
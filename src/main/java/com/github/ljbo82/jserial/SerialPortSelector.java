@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multiplexes read readiness of several serial ports on a single thread.
+ *
+ * <p>A registered port is <i>readable</i> when data can be read from its input stream without blocking (i.e. its
+ * {@link java.io.InputStream#available()} is non-zero) or when it was closed (the next read returns end-of-stream).
+ * Readiness is detected by non-blocking reads filling the port read-ahead buffer, so read-ahead buffering must be
+ * enabled on registered ports and cannot be disabled while they stay registered (see
+ * {@link SerialPort#setInputBufferSize(int)}).</p>
+ *
+ * <p>Similar to {@link java.nio.channels.Selector}, the set returned by {@link #selectedKeys()} is not thread-safe and
+ * keys must be removed from it by the application once handled.</p>
+ */
+public class SerialPortSelector implements Closeable {
+    // region STATIC SCOPE
+    // =================================================================================================================
+    /*pp*/  static final long MIN_POLL_INTERVAL_MILLIS = 1;
+    /*pp*/  static final long MAX_POLL_INTERVAL_MILLIS = 10;
+
+    public static final class Key {
+        private final SerialPortSelector selector;
+        private final SerialPort port;
+
+        private volatile Object attachment;
+        private volatile boolean valid = true;
+        private volatile boolean suspended;
+        private volatile IOException error;
+
+        private Key(SerialPortSelector selector, SerialPort port, Object attachment) {
+            this.selector = selector;
+            this.port = port;
+            this.attachment = attachment;
+        }
+
+        public SerialPortSelector selector() {
+            return selector;
+        }
+
+        public SerialPort port() {
+            return port;
+        }
+
+        public Object attachment() {
+            return attachment;
+        }
+
+        public Object attach(Object attachment) {
+            Object previous = this.attachment;
+            this.attachment = attachment;
+            return previous;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        /** Excludes the port from selection operations until {@link #resume()} is called. */
+        void suspend() {
+            suspended = true;
+        }
+
+        void resume() {
+            suspended = false;
+            selector.wakeup();
+        }
+
+        /** Returns (and clears) the error raised while probing the port, if any. */
+        IOException takeError() {
+            IOException e = error;
+            error = null;
+            return e;
+        }
+
+        /** Cancels this key. Port will be ignored by subsequent selection operations. */
+        public void cancel() {
+            if (valid) {
+                valid = false;
+                selector.deregister(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Key(%s)%s", port, valid ? "" : " (cancelled)");
+        }
+    }
+    // =================================================================================================================
+    // endregion
+
+    private final Set<Key> keys = new LinkedHashSet<>(); // Guarded by 'keys'
+    private final Set<Key> selectedKeys = new LinkedHashSet<>();
+    private final Object wakeupLock = new Object();
+
+    private boolean wakeupPending; // Guarded by wakeupLock
+    private volatile boolean closed;
+
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("Selector is closed");
+    }
+
+    private void deregister(Key key) {
+        synchronized (keys) {
+            if (keys.remove(key))
+                key.port.inputStream.removeRegistration();
+        }
+    }
+
+    /**
+     * Registers a port with this selector.
+     *
+     * @return the selection key representing the registration.
+     */
+    public Key register(SerialPort port, Object attachment) {
+        if (port == null)
+            throw new NullPointerException("Null port");
+
+        ensureOpen();
+
+        Key key = new Key(this, port, attachment);
+        synchronized (keys) {
+            for (Key k : keys) {
+                if (k.port == port)
+                    throw new IllegalArgumentException(String.format("Port already registered: %s", port.getName()));
+            }
+
+            port.inputStream.addRegistration(); // Fails if read-ahead buffering is disabled
+            keys.add(key);
+        }
+
+        return key;
+    }
+
+    public Key register(SerialPort port) {
+        return register(port, null);
+    }
+
+    /** Returns a snapshot of the keys currently registered with this selector. */
+    public Set<Key> keys() {
+        synchronized (keys) {
+            return Collections.unmodifiableSet(new LinkedHashSet<>(keys));
+        }
+    }
+
+    public Set<Key> selectedKeys() {
+        ensureOpen();
+        return selectedKeys;
+    }
+
+    private int probe() {
+        List<Key> snapshot;
+        synchronized (keys) {
+            snapshot = new ArrayList<>(keys);
+        }
+
+        int updated = 0;
+        for (Key key : snapshot) {
+            if (key.suspended)
+                continue;
+
+            boolean readable;
+            try {
+                readable = key.port.inputStream.poll() != 0;
+            } catch (IOException e) {
+                key.error = e;
+                readable = true; // Error will be reported to the application by the next read
+            } catch (RuntimeException e) {
+                key.error = new IOException(e);
+                readable = true; // A failing port must not stop selection of the others
+            }
+
+            if (readable && selectedKeys.add(key))
+                updated++;
+        }
+
+        return updated;
+    }
+
+    private int doSelect(long timeoutNanos) {
+        ensureOpen();
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        long pollInterval = MIN_POLL_INTERVAL_MILLIS;
+        while (true) {
+            int updated = probe();
+            if (updated > 0 || timeoutNanos == 0)
+                return updated;
+
+            synchronized (wakeupLock) {
+                if (wakeupPending || closed) {
+                    wakeupPending = false;
+                    return 0;
+                }
+
+                long waitMillis = pollInterval;
+                if (timeoutNanos > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        return 0;
+
+                    waitMillis = Math.max(1, Math.min(waitMillis, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                }
+
+                try {
+                    wakeupLock.wait(waitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+
+                if (wakeupPending || closed) {
+                    wakeupPending = false;
+                    return 0;
+                }
+            }
+
+            // Idle ports are polled less often as time passes
+            pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * Selects readable ports, blocking until at least one port is readable, {@link #wakeup()} is invoked, the calling
+     * thread is interrupted or the given timeout expires.
+     *
+     * @param timeoutMillis maximum wait time. Zero blocks indefinitely.
+     * @return number of keys added to the selected-key set.
+     */
+    public int select(long timeoutMillis) {
+        if (timeoutMillis < 0)
+            throw new IllegalArgumentException("Negative timeout");
+
+        return doSelect(timeoutMillis == 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    public int select() {
+        return select(0);
+    }
+
+    /** Selects readable ports without blocking. */
+    public int selectNow() {
+        return doSelect(0);
+    }
+
+    /** Causes an in-progress (or the next) selection operation to return immediately. */
+    public SerialPortSelector wakeup() {
+        synchronized (wakeupLock) {
+            wakeupPending = true;
+            wakeupLock.notifyAll();
+        }
+
+        return this;
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /** Closes this selector. Registered ports are not closed. */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        synchronized (keys) {
+            for (Key key : keys) {
+                key.valid = false;
+                key.port.inputStream.removeRegistration();
+            }
+            keys.clear();
+        }
+
+        wakeup();
+    }
+}
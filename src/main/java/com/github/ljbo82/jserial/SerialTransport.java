@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import com.github.ljbo82.jserial.SerialPort.DataBits;
+import com.github.ljbo82.jserial.SerialPort.Parity;
+import com.github.ljbo82.jserial.SerialPort.StopBits;
+
+import java.io.IOException;
+
+/**
+ * Low-level access to an open port, on top of which {@link SerialPort} is built (see
+ * {@link SerialPort#SerialPort(String, SerialTransport)}).
+ *
+ * <p>Implementations do not need to be thread-safe: {@link SerialPort} serializes reads (and RX purges) and writes
+ * (and TX purges/flushes) independently, while configuration and closing are never concurrent with other calls.</p>
+ *
+ * <p>Available implementations: the native port (default), {@link LoopbackTransport} (in-memory pair) and
+ * {@link PtyTransport} (linux terminal devices through plain file I/O).</p>
+ */
+public interface SerialTransport {
+    /**
+     * Reads data from the port.
+     *
+     * @param timeoutMillis maximum time to wait for data. Zero means the call returns immediately when there is no
+     *                      data. {@link SerialPort} splits longer waits, so this is never more than 100 ms.
+     * @return number of bytes read (zero if no data arrived in time).
+     */
+    int read(byte[] b, int off, int len, long timeoutMillis) throws IOException;
+
+    void write(byte[] b, int off, int len) throws IOException;
+
+    /** Waits until written data is transmitted. */
+    void flush() throws IOException;
+
+    void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException;
+
+    int getBaud();
+
+    DataBits getDataBits();
+
+    Parity getParity();
+
+    StopBits getStopBits();
+
+    /** Discards received data which was not read yet. */
+    void purgeRX() throws IOException;
+
+    /** Discards written data which was not transmitted yet. */
+    void purgeTX() throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits Java Flight Recorder events for port operations (Java 11+).
+ *
+ * <p>Events are only allocated and timed while their type is enabled in a recording. Otherwise, the cost is a check
+ * of the (cached) event type state, with no allocation.</p>
+ */
+final class JfrEvents {
+    private JfrEvents() {}
+
+    private static final String OUTCOME_OK      = "ok";
+    private static final String OUTCOME_EOS     = "eos";
+    private static final String OUTCOME_TIMEOUT = "timeout";
+    private static final String OUTCOME_LIMIT   = "limit";
+    private static final String OUTCOME_ERROR   = "error";
+
+    @Category({"Serial Port"})
+    private abstract static class PortEvent extends Event {
+        @Label("Port")
+        String port;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Outcome")
+        @Description("ok, eos (port closed), timeout, limit (delimiter not found within length limit) or error")
+        String outcome;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("com.github.ljbo82.jserial.NativeInit")
+    @Label("Native Library Initialization")
+    private static final class NativeInitEvent extends PortEvent {}
+
+    @Name("com.github.ljbo82.jserial.Open")
+    @Label("Port Open")
+    private static final class OpenEvent extends PortEvent {}
+
+    @Name("com.github.ljbo82.jserial.Close")
+    @Label("Port Close")
+    private static final class CloseEvent extends PortEvent {}
+
+    @Name("com.github.ljbo82.jserial.Config")
+    @Label("Port Configuration")
+    private static final class ConfigEvent extends PortEvent {}
+
+    @Name("com.github.ljbo82.jserial.Purge")
+    @Label("Port Purge")
+    private static final class PurgeEvent extends PortEvent {}
+
+    @Name("com.github.ljbo82.jserial.Read")
+    @Label("Port Read")
+    private static final class ReadEvent extends PortEvent {}
+
+    @Name("com.github.ljbo82.jserial.Write")
+    @Label("Port Write")
+    private static final class WriteEvent extends PortEvent {}
+
+    @Name("com.github.ljbo82.jserial.Flush")
+    @Label("Port Flush")
+    private static final class FlushEvent extends PortEvent {}
+
+    private static final EventType[] EVENT_TYPES = getEventTypes(); // Indexed by JfrEventType ordinal
+
+    private static Class<? extends PortEvent> getEventClass(JfrEventType type) {
+        switch (type) {
+            case NATIVE_INIT:
+                return NativeInitEvent.class;
+
+            case OPEN:
+                return OpenEvent.class;
+
+            case CLOSE:
+                return CloseEvent.class;
+
+            case CONFIG:
+                return ConfigEvent.class;
+
+            case PURGE:
+                return PurgeEvent.class;
+
+            case READ:
+                return ReadEvent.class;
+
+            case WRITE:
+                return WriteEvent.class;
+
+            case FLUSH:
+                return FlushEvent.class;
+
+            default:
+                throw new UnsupportedOperationException(String.format("Missing support for %s", type));
+        }
+    }
+
+    /** Returns the event types, or {@code null} if flight recorder is not supported by the runtime. */
+    private static EventType[] getEventTypes() {
+        JfrEventType[] types = JfrEventType.values();
+        EventType[] eventTypes = new EventType[types.length];
+        try {
+            for (JfrEventType type : types) {
+                eventTypes[type.ordinal()] = EventType.getEventType(getEventClass(type));
+            }
+        } catch (InternalError e) {
+            return null; // e.g. JVM built without flight recorder
+        }
+
+        return eventTypes;
+    }
+
+    private static PortEvent create(JfrEventType type) {
+        switch (type) {
+            case NATIVE_INIT:
+                return new NativeInitEvent();
+
+            case OPEN:
+                return new OpenEvent();
+
+            case CLOSE:
+                return new CloseEvent();
+
+            case CONFIG:
+                return new ConfigEvent();
+
+            case PURGE:
+                return new PurgeEvent();
+
+            case READ:
+                return new ReadEvent();
+
+            case WRITE:
+                return new WriteEvent();
+
+            case FLUSH:
+                return new FlushEvent();
+
+            default:
+                throw new UnsupportedOperationException(String.format("Missing support for %s", type));
+        }
+    }
+
+    static Object begin(JfrEventType type) {
+        if (EVENT_TYPES == null || !EVENT_TYPES[type.ordinal()].isEnabled())
+            return null;
+
+        PortEvent event = create(type);
+        event.begin();
+        return event;
+    }
+
+    /** Ends an event, returning it if it shall be committed. */
+    private static PortEvent end(Object event, String portName) {
+        if (event == null)
+            return null;
+
+        PortEvent portEvent = (PortEvent) event;
+        portEvent.end();
+
+        if (!portEvent.shouldCommit())
+            return null; // Below duration threshold
+
+        portEvent.port = portName;
+        return portEvent;
+    }
+
+    static void commit(Object event, String portName, long bytes, Throwable error) {
+        PortEvent portEvent = end(event, portName);
+        if (portEvent == null)
+            return;
+
+        portEvent.bytes = Math.max(bytes, 0);
+
+        if (error == null) {
+            portEvent.outcome = bytes < 0 ? OUTCOME_EOS : OUTCOME_OK;
+        } else if (error instanceof SerialPort.TimeoutException) {
+            portEvent.outcome = OUTCOME_TIMEOUT;
+        } else {
+            portEvent.outcome = OUTCOME_ERROR;
+            portEvent.error = error.toString();
+        }
+
+        portEvent.commit();
+    }
+
+    static void commitTimeout(Object event, String portName) {
+        PortEvent portEvent = end(event, portName);
+        if (portEvent == null)
+            return;
+
+        portEvent.outcome = OUTCOME_TIMEOUT;
+        portEvent.commit();
+    }
+
+    static void commitLimitExceeded(Object event, String portName) {
+        PortEvent portEvent = end(event, portName);
+        if (portEvent == null)
+            return;
+
+        portEvent.outcome = OUTCOME_LIMIT;
+        portEvent.commit();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import com.github.ljbo82.jserial.SerialPort.DataBits;
+import com.github.ljbo82.jserial.SerialPort.Parity;
+import com.github.ljbo82.jserial.SerialPort.StopBits;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/** Coalesced writes when a native write fails (over a loopback pair, so no hardware is needed). */
+public class BufferedWriteTest {
+    /** Loopback transport failing the next write on request. */
+    private static final class FailingTransport implements SerialTransport {
+        private final LoopbackTransport delegate;
+        private boolean failNextWrite;
+
+        FailingTransport(LoopbackTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len, long timeoutMillis) throws IOException {
+            return delegate.read(b, off, len, timeoutMillis);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                throw new IOException("Write failure");
+            }
+
+            delegate.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException {
+            delegate.config(baud, dataBits, parity, stopBits);
+        }
+
+        @Override
+        public int getBaud() {
+            return delegate.getBaud();
+        }
+
+        @Override
+        public DataBits getDataBits() {
+            return delegate.getDataBits();
+        }
+
+        @Override
+        public Parity getParity() {
+            return delegate.getParity();
+        }
+
+        @Override
+        public StopBits getStopBits() {
+            return delegate.getStopBits();
+        }
+
+        @Override
+        public void purgeRX() throws IOException {
+            delegate.purgeRX();
+        }
+
+        @Override
+        public void purgeTX() throws IOException {
+            delegate.purgeTX();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private FailingTransport transport;
+    private SerialPort port;
+    private SerialPort peer;
+
+    @Before
+    public void setUp() throws IOException {
+        LoopbackTransport[] pair = LoopbackTransport.createPair(false);
+        transport = new FailingTransport(pair[0]);
+        port = new SerialPort("port", transport);
+        peer = new SerialPort("peer", pair[1]);
+        peer.setReadTimeout(1000);
+        port.setFlushPolicy(FlushPolicy.explicit(16));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        port.close();
+        peer.close();
+    }
+
+    @Test
+    public void failedDrainKeepsBufferedData() throws IOException {
+        OutputStream os = port.getOutputStream();
+        os.write(new byte[] {1, 2, 3});
+
+        transport.failNextWrite = true;
+        try {
+            os.flush();
+            fail("Write failure not reported");
+        } catch (IOException e) {
+            assertEquals("Write failure", e.getMessage());
+        }
+
+        os.flush();
+
+        byte[] received = new byte[3];
+        InputStream is = peer.getInputStream();
+        assertEquals(3, is.read(received));
+        assertArrayEquals(new byte[] {1, 2, 3}, received);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/** Several registrations watching the same port (over a loopback pair, so no hardware is needed). */
+public class DispatcherTest {
+    private SerialPort port;
+    private SerialPort peer;
+
+    @Before
+    public void setUp() {
+        LoopbackTransport[] pair = LoopbackTransport.createPair(false);
+        port = new SerialPort("port", pair[0]);
+        peer = new SerialPort("peer", pair[1]);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        port.setDataListener(null);
+        port.close();
+        peer.close();
+    }
+
+    @Test
+    public void allRegistrationsAreNotified() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        port.setDataListener((p, data) -> received.countDown());
+
+        CountDownLatch readable = new CountDownLatch(2);
+        SerialPortDispatcher dispatcher = SerialPortDispatcher.getInstance();
+        SerialPortDispatcher.Registration first = dispatcher.register(port, (p, error) -> {
+            readable.countDown();
+            return false;
+        }, null);
+        SerialPortDispatcher.Registration second = dispatcher.register(port, (p, error) -> {
+            readable.countDown();
+            return false;
+        }, null);
+
+        peer.getOutputStream().write(1);
+        try {
+            assertTrue(readable.await(5, TimeUnit.SECONDS));
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+        } finally {
+            first.cancel();
+            second.cancel();
+        }
+    }
+
+    @Test
+    public void listenerKeepsWorkingAfterOtherRegistrationIsCancelled() throws Exception {
+        CountDownLatch received = new CountDownLatch(2);
+        port.setDataListener((p, data) -> {
+            for (int i = 0; i < data.length; i++) {
+                received.countDown();
+            }
+        });
+
+        SerialPortDispatcher.getInstance().register(port, (p, error) -> true, null).cancel();
+
+        peer.getOutputStream().write(1);
+        peer.getOutputStream().write(2);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/** Stream reads from an idle port with zero read timeout (over a loopback pair, so no hardware is needed). */
+public class IdleReadTest {
+    private SerialPort port;
+    private SerialPort peer;
+
+    @Before
+    public void setUp() {
+        LoopbackTransport[] pair = LoopbackTransport.createPair(false);
+        port = new SerialPort("port", pair[0]);
+        peer = new SerialPort("peer", pair[1]);
+        assertEquals(0, port.getReadTimeout());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        port.close();
+        peer.close();
+    }
+
+    @Test(expected = SerialPort.TimeoutException.class)
+    public void readByteTimesOut() throws IOException {
+        port.getInputStream().read();
+    }
+
+    @Test(expected = SerialPort.TimeoutException.class)
+    public void readArrayTimesOut() throws IOException {
+        port.getInputStream().read(new byte[16]);
+    }
+
+    @Test(expected = SerialPort.TimeoutException.class)
+    public void unbufferedReadTimesOut() throws IOException {
+        port.setInputBufferSize(0);
+        port.getInputStream().read(new byte[16]);
+    }
+
+    @Test
+    public void tryReadReportsExpiry() throws IOException {
+        byte[] b = new byte[16];
+        assertEquals(SerialPort.TIMED_OUT, port.tryRead(b, 0, b.length, 0));
+        assertEquals(SerialPort.TIMED_OUT, port.tryRead(b, 0, b.length, TimeUnit.MILLISECONDS.toNanos(10)));
+        assertEquals(0, port.tryRead(b, 0, 0, 0));
+    }
+
+    @Test
+    public void readReturnsDataOnceReceived() throws IOException {
+        peer.getOutputStream().write(new byte[] {0, 42});
+
+        InputStream is = port.getInputStream();
+        assertEquals(0, is.read()); // A NUL byte, not "no data"
+        assertEquals(42, is.read());
+    }
+
+    @Test
+    public void readReturnsEosOnceClosed() throws IOException {
+        port.close();
+        assertEquals(-1, port.getInputStream().read());
+        assertEquals(-1, port.getInputStream().read(new byte[16]));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial;
+
+import com.github.ljbo82.jserial.comm.LineConnection;
+import com.github.ljbo82.jserial.comm.PacketConnection;
+import com.github.ljbo82.jserial.comm.SerialPortConnection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Smoke test meant to be compiled into a GraalVM native executable (see {@code native} profile).
+ *
+ * <p>Loads the native library and enumerates ports (exercising native library extraction and the JNI/resource
+ * metadata), then exchanges line and packet messages between two ports: an in-memory loopback pair when called
+ * without arguments, or both ends of a pseudo-terminal pair (e.g. created by <i>socat</i>) when called with their
+ * paths.</p>
+ */
+public class NativeImageSmokeTest {
+
+    private static SerialPort[] openPorts(String[] args) throws IOException {
+        if (args.length == 0) {
+            LoopbackTransport[] pair = LoopbackTransport.createPair(false);
+            return new SerialPort[] { new SerialPort("loopback-a", pair[0]), new SerialPort("loopback-b", pair[1]) };
+        }
+
+        if (args.length != 2)
+            throw new IllegalArgumentException("Usage: [<pty path> <pty path>]");
+
+        return new SerialPort[] { new SerialPort(args[0], new PtyTransport(args[0])), new SerialPort(args[1], new PtyTransport(args[1])) };
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.print("[NATIVE] test... "); System.out.flush();
+        NativeSerialPort.initNativeInterface();
+        String[] portNames = SerialPort.getPortNames();
+        System.out.printf("DONE! (%d port(s) found)\n", portNames.length);
+
+        SerialPort[] ports = openPorts(args);
+        System.out.printf("Opened ports %s and %s\n", ports[0].getName(), ports[1].getName());
+
+        try (SerialPortConnection a = new SerialPortConnection(ports[0]); SerialPortConnection b = new SerialPortConnection(ports[1])) {
+            System.out.print("[LINE] test... "); System.out.flush();
+            new LineConnection(a).write("hello");
+            String line = new LineConnection(b).read();
+            if (!"hello".equals(line))
+                throw new IOException(String.format("Unexpected line: %s", line));
+            System.out.println("DONE!");
+
+            System.out.print("[PKT] test... "); System.out.flush();
+            byte[] packet = "world!".getBytes(StandardCharsets.US_ASCII);
+            new PacketConnection(b).write(packet);
+            byte[] received = new PacketConnection(a).read();
+            if (!Arrays.equals(packet, received))
+                throw new IOException(String.format("Unexpected packet: %s", Arrays.toString(received)));
+            System.out.println("DONE!");
+        }
+
+        System.out.println("SUCCESS!");
+    }
+}
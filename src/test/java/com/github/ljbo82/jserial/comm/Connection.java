@@ -15,12 +15,39 @@
  */
 package com.github.ljbo82.jserial.comm;
 
+import com.github.ljbo82.jserial.SerialPort;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class Connection implements Closeable {
+    // region Static scope
+    /** Returned by {@link #readUntil(byte, byte[], int, int)} when the delimiter is not found within the limit. */
+    protected static final int LIMIT_EXCEEDED = -3;
+
+    private static ExecutorService asyncReadExecutor;
+
+    private static synchronized ExecutorService getAsyncReadExecutor() {
+        if (asyncReadExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            asyncReadExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, String.format("connection-read-%d", counter.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return asyncReadExecutor;
+    }
+    // endregion
 
     public static class Wrapper extends Connection {
         private final Connection wrapped;
@@ -47,6 +74,21 @@ public abstract class Connection implements Closeable {
             return wrapped.getOutputStream();
         }
 
+        @Override
+        protected CompletableFuture<Integer> readAsync(ByteBuffer dst) {
+            return wrapped.readAsync(dst);
+        }
+
+        @Override
+        protected int readUntil(byte delimiter, byte[] buf, int off, int maxLen) throws IOException {
+            return wrapped.readUntil(delimiter, buf, off, maxLen);
+        }
+
+        @Override
+        protected int readFully(byte[] buf, int off, int len) throws IOException {
+            return wrapped.readFully(buf, off, len);
+        }
+
         @Override
         public void purge() throws IOException {
             wrapped.purge();
@@ -69,5 +111,88 @@ public abstract class Connection implements Closeable {
 
     protected abstract OutputStream getOutputStream();
 
+    /**
+     * Reads available data into given heap buffer, completing as soon as some data was read.
+     *
+     * <p>Default implementation performs a blocking read on a pooled thread (a thread is used only while a read is
+     * pending), retrying on read timeouts while the connection is open. Implementations able to wait for data without
+     * blocking a thread should override this method.</p>
+     *
+     * @return a future holding the number of bytes read, or -1 on EOS.
+     */
+    protected CompletableFuture<Integer> readAsync(ByteBuffer dst) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                int read;
+                do {
+                    try {
+                        read = getInputStream().read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                    } catch (SerialPort.TimeoutException e) {
+                        read = 0; // No data yet: keep waiting while connection is open
+                    }
+                } while (read == 0 && isOpen()); // No data (read timeout expired or no read timeout)
+
+                if (read > 0)
+                    dst.position(dst.position() + read);
+
+                return read;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncReadExecutor());
+    }
+
+    /**
+     * Reads data up to given delimiter (which is consumed but not copied).
+     *
+     * <p>Default implementation reads the input stream byte by byte. Implementations able to scan received data in bulk
+     * should override this method.</p>
+     *
+     * @return length of data preceding the delimiter, -1 on EOS (or no data with no read timeout) or
+     * {@link #LIMIT_EXCEEDED} if delimiter is not found within {@code maxLen} bytes.
+     */
+    protected int readUntil(byte delimiter, byte[] buf, int off, int maxLen) throws IOException {
+        InputStream is = getInputStream();
+
+        int b;
+        for (int len = 0; len <= maxLen; len++) {
+            if ((b = is.read()) <= 0) // EOS or no data with no read timeout
+                return -1;
+
+            if (b == (delimiter & 0xff))
+                return len;
+
+            if (len < maxLen)
+                buf[off + len] = (byte) b;
+        }
+
+        return LIMIT_EXCEEDED;
+    }
+
+    /**
+     * Reads exactly {@code len} bytes.
+     *
+     * <p>Default implementation loops over input stream reads. Implementations able to accumulate received data in bulk
+     * should override this method.</p>
+     *
+     * @return {@code len} or -1 on EOS (or no data with no read timeout).
+     */
+    protected int readFully(byte[] buf, int off, int len) throws IOException {
+        InputStream is = getInputStream();
+
+        int totalRead = 0;
+        int read;
+        while (totalRead < len) {
+            read = is.read(buf, off + totalRead, len - totalRead);
+
+            if (read <= 0) // EOS or no data with no read timeout
+                return -1;
+
+            totalRead += read;
+        }
+
+        return totalRead;
+    }
+
     public abstract void purge() throws IOException;
 }
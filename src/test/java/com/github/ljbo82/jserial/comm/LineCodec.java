@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.comm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Line framing working on reusable buffers: after setup, reading and writing lines does not allocate.
+ *
+ * <p>Received data is read in bulk into a read-ahead buffer, so several lines may be decoded out of a single read.
+ * After {@link #next()}, the current line is available as a byte slice ({@link #array()}, {@link #offset()},
+ * {@link #length()}) or as a {@link CharSequence} ({@link #line()}). Lines holding only ASCII characters are exposed
+ * without decoding, while other lines are decoded as UTF-8 into a reusable buffer. Both views are only valid until the
+ * next call to {@link #next()}.</p>
+ *
+ * <p>Any byte of the delimiter set ends a line (so CR/LF terminated lines produce an additional empty line when both
+ * are delimiters). Written lines are terminated with the first delimiter of the set, unless they already end with a
+ * delimiter. Instances are not thread-safe, and data buffered by the codec is not seen by other readers of the wrapped
+ * connection.</p>
+ */
+public class LineCodec extends Connection.Wrapper {
+    // region Static scope
+    private static final byte[] DEFAULT_DELIMITERS = { (byte) LineConnection.MESSAGE_DELIMITER };
+
+    /** ASCII line exposed as a {@link CharSequence} without copying. */
+    private static final class AsciiSequence implements CharSequence {
+        private byte[] array;
+        private int offset;
+        private int length;
+
+        AsciiSequence set(byte[] array, int offset, int length) {
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException();
+
+            return (char) array[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end)
+                throw new IndexOutOfBoundsException();
+
+            return new AsciiSequence().set(array, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(array, offset, length, StandardCharsets.US_ASCII);
+        }
+    }
+    // endregion
+
+    private final boolean[] delimiters = new boolean[256];
+    private final byte writeDelimiter;
+    private final int maxLen;
+
+    // Read-ahead buffer: unconsumed data lies in [inStart, inEnd), and [inStart, scanned) holds no delimiter
+    private final byte[] inBuffer;
+    private final ByteBuffer inByteBuffer;
+    private int inStart;
+    private int inEnd;
+    private int scanned;
+    private int pendingBits; // OR of the bytes in [inStart, scanned)
+
+    private int lineOffset;
+    private int lineLength;
+    private boolean lineAscii;
+
+    private final AsciiSequence asciiLine = new AsciiSequence();
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer decoded;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final char[] encodeChars;
+    private final CharBuffer encodeCharBuffer;
+    private final byte[] outBuffer;
+    private final ByteBuffer outByteBuffer;
+
+    /** Creates a codec using {@link LineConnection} framing (carriage return delimiter, 1024-byte lines). */
+    public LineCodec(Connection wrapped) {
+        this(wrapped, DEFAULT_DELIMITERS, LineConnection.MESSAGE_MAX_LEN);
+    }
+
+    /**
+     * @param delimiters bytes ending a line (the first one terminates written lines).
+     * @param maxLen     max line length in bytes (delimiter excluded).
+     */
+    public LineCodec(Connection wrapped, byte[] delimiters, int maxLen) {
+        super(wrapped);
+
+        if (delimiters == null)
+            throw new NullPointerException("Null delimiters");
+
+        if (delimiters.length == 0)
+            throw new IllegalArgumentException("Empty delimiter set");
+
+        if (maxLen <= 0)
+            throw new IllegalArgumentException("Invalid max length");
+
+        for (byte delimiter : delimiters)
+            this.delimiters[delimiter & 0xff] = true;
+
+        this.writeDelimiter = delimiters[0];
+        this.maxLen = maxLen;
+
+        this.inBuffer = new byte[2 * maxLen + 1];
+        this.inByteBuffer = ByteBuffer.wrap(inBuffer);
+        this.decoded = CharBuffer.allocate(maxLen); // UTF-8 never decodes into more chars than bytes
+
+        this.encodeChars = new char[maxLen + 1];
+        this.encodeCharBuffer = CharBuffer.wrap(encodeChars);
+        this.outBuffer = new byte[maxLen + 1];
+        this.outByteBuffer = ByteBuffer.wrap(outBuffer);
+    }
+
+    /** Discards buffered data and the remaining input, reporting an oversized line. */
+    private IOException lengthViolation() throws IOException {
+        purge();
+        return new IOException("Message length violates protocol limits");
+    }
+
+    /**
+     * Advances to the next line, reading from the wrapped connection only when buffered data holds no complete line.
+     *
+     * <p>If a read times out, data received so far is kept, so a later call resumes the pending line.</p>
+     *
+     * @return whether a line is available (false on EOS or no data with no read timeout).
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int bits = pendingBits;
+            for (int i = scanned; i < inEnd; i++) {
+                int b = inBuffer[i] & 0xff;
+                if (delimiters[b]) {
+                    if (i - inStart > maxLen)
+                        throw lengthViolation();
+
+                    lineOffset = inStart;
+                    lineLength = i - inStart;
+                    lineAscii = (bits & 0x80) == 0;
+
+                    inStart = scanned = i + 1;
+                    pendingBits = 0;
+                    return true;
+                }
+
+                bits |= b;
+            }
+
+            scanned = inEnd;
+            pendingBits = bits;
+
+            if (inEnd - inStart > maxLen)
+                throw lengthViolation();
+
+            if (inEnd == inBuffer.length) {
+                // Moves the pending line to the start of the buffer
+                System.arraycopy(inBuffer, inStart, inBuffer, 0, inEnd - inStart);
+                inEnd -= inStart;
+                scanned = inEnd;
+                inStart = 0;
+            } else if (inStart == inEnd) {
+                inStart = inEnd = scanned = 0;
+            }
+
+            int read = getInputStream().read(inBuffer, inEnd, inBuffer.length - inEnd);
+            if (read <= 0) // EOS or no data with no read timeout
+                return false;
+
+            inEnd += read;
+        }
+    }
+
+    /** Returns the array holding the current line (see {@link #offset()} and {@link #length()}). */
+    public byte[] array() {
+        return inBuffer;
+    }
+
+    public int offset() {
+        return lineOffset;
+    }
+
+    /** Returns the length, in bytes, of the current line. */
+    public int length() {
+        return lineLength;
+    }
+
+    /** Checks whether the current line holds only ASCII characters. */
+    public boolean isAscii() {
+        return lineAscii;
+    }
+
+    /** Returns the current line as characters (valid until next call to {@link #next()}). */
+    public CharSequence line() {
+        if (lineAscii)
+            return asciiLine.set(inBuffer, lineOffset, lineLength);
+
+        inByteBuffer.limit(lineOffset + lineLength).position(lineOffset);
+        decoded.clear();
+        decoder.reset();
+        decoder.decode(inByteBuffer, decoded, true);
+        decoder.flush(decoded);
+        decoded.flip();
+        return decoded;
+    }
+
+    /** Writes a line, appending the delimiter unless line already ends with one. */
+    public void write(CharSequence line) throws IOException {
+        int len = line.length();
+        byte terminator = writeDelimiter;
+        if (len > 0 && line.charAt(len - 1) < 0x80 && delimiters[line.charAt(len - 1)])
+            terminator = (byte) line.charAt(--len); // Already terminated
+
+        // ASCII fast path: characters are stored as they are
+        int n = 0;
+        int i = 0;
+        for (; i < len; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80)
+                break;
+
+            if (n == maxLen)
+                throw new IllegalArgumentException("Message length violates protocol limits");
+
+            outBuffer[n++] = (byte) c;
+        }
+
+        if (i < len) {
+            // Non-ASCII remainder (each character takes at least one byte, so a longer remainder cannot fit)
+            int remaining = len - i;
+            if (n + remaining > maxLen)
+                throw new IllegalArgumentException("Message length violates protocol limits");
+
+            for (int j = 0; j < remaining; j++)
+                encodeChars[j] = line.charAt(i + j);
+
+            encodeCharBuffer.limit(remaining).position(0);
+            outByteBuffer.limit(maxLen).position(n);
+            encoder.reset();
+            CoderResult result = encoder.encode(encodeCharBuffer, outByteBuffer, true);
+            if (result.isOverflow() || encoder.flush(outByteBuffer).isOverflow())
+                throw new IllegalArgumentException("Message length violates protocol limits");
+
+            n = outByteBuffer.position();
+        }
+
+        outBuffer[n++] = terminator;
+
+        OutputStream os = getOutputStream();
+        os.write(outBuffer, 0, n);
+        os.flush();
+    }
+
+    /** Discards data buffered by the codec and the pending input of the wrapped connection. */
+    @Override
+    public void purge() throws IOException {
+        inStart = inEnd = scanned = pendingBits = 0;
+        super.purge();
+    }
+}
@@ -15,42 +15,36 @@
  */
 package com.github.ljbo82.jserial.comm;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 
 public class LineConnection extends Connection.Wrapper {
     // region Static scope
-    private static final int  MESSAGE_MAX_LEN   = 1024;
-    private static final char MESSAGE_DELIMITER = '\r';
+    /*pp*/ static final int  MESSAGE_MAX_LEN   = 1024;
+    /*pp*/ static final char MESSAGE_DELIMITER = '\r';
     // endregion
 
+    private final byte[] readBuffer = new byte[2 * MESSAGE_MAX_LEN]; // Reused by reads (guarded by itself)
+
     public LineConnection(Connection wrapped) {
         super(wrapped);
     }
 
     public String read() throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
-        InputStream is = getInputStream();
+        synchronized (readBuffer) {
+            int len = readUntil((byte) MESSAGE_DELIMITER, readBuffer, 0, readBuffer.length);
+            if (len == LIMIT_EXCEEDED) {
+                // Message delimiter not found (message is too long)
+                purge();
+                throw new IOException("Message length violates protocol limits");
+            }
 
-        int b;
-        while (buffer.size() < 2 * MESSAGE_MAX_LEN) {
-            if ((b = is.read()) <= 0) // EOS or no data with no read timeout
+            if (len < 0) // EOS or no data with no read timeout
                 return null;
 
-            if (b == MESSAGE_DELIMITER) {
-                return new String(buffer.toByteArray(), 0, buffer.size(), StandardCharsets.UTF_8);
-            }
-
-            buffer.write(b);
+            return new String(readBuffer, 0, len, StandardCharsets.UTF_8);
         }
-
-        // Message delimiter not found (message is too long)
-        purge();
-        throw new IOException("Message length violates protocol limits");
     }
 
     public void write(String msg) throws IOException {
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.comm;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted buffer holding a packet payload (see {@link PacketConnection#read(Pool)}).
+ *
+ * <p>A buffer is handed out with one reference. Each holder (e.g. a consumer on another thread) retains it, and once
+ * every reference is released the buffer returns to its pool. A released buffer must not be used anymore.</p>
+ */
+public final class PacketBuffer {
+    // region Static scope
+    /**
+     * Pool of packet buffers. Buffers are allocated on demand, and up to {@code capacity} released buffers are kept for
+     * reuse, so a steady flow of packets does not allocate.
+     */
+    public static final class Pool {
+        private final PacketBuffer[] free; // Guarded by 'this'
+        private int freeCount;            // Guarded by 'this'
+
+        public Pool(int capacity) {
+            if (capacity <= 0)
+                throw new IllegalArgumentException("Invalid capacity");
+
+            this.free = new PacketBuffer[capacity];
+        }
+
+        /** Returns a buffer holding one reference. */
+        public PacketBuffer acquire() {
+            PacketBuffer buffer = null;
+            synchronized (this) {
+                if (freeCount > 0) {
+                    buffer = free[--freeCount];
+                    free[freeCount] = null;
+                }
+            }
+
+            if (buffer == null)
+                buffer = new PacketBuffer(this);
+
+            buffer.refCount.set(1);
+            buffer.length = 0;
+            return buffer;
+        }
+
+        private void recycle(PacketBuffer buffer) {
+            synchronized (this) {
+                if (freeCount < free.length)
+                    free[freeCount++] = buffer;
+            }
+        }
+    }
+    // endregion
+
+    private final Pool pool;
+    private final byte[] array = new byte[PacketConnection.MESSAGE_MAX_LEN];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(array);
+    private final AtomicInteger refCount = new AtomicInteger();
+    private int length;
+
+    private PacketBuffer(Pool pool) {
+        this.pool = pool;
+    }
+
+    /** Returns the array holding the payload (starting at index 0, see {@link #length()}). */
+    public byte[] array() {
+        return array;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /*pp*/ void setLength(int length) {
+        this.length = length;
+    }
+
+    /** Returns a view of the payload (the same instance is returned by every call). */
+    public ByteBuffer byteBuffer() {
+        byteBuffer.limit(length).position(0);
+        return byteBuffer;
+    }
+
+    public PacketBuffer retain() {
+        if (refCount.getAndIncrement() <= 0) {
+            refCount.getAndDecrement();
+            throw new IllegalStateException("Buffer was released");
+        }
+
+        return this;
+    }
+
+    /** Releases a reference, returning the buffer to its pool when it was the last one. */
+    public void release() {
+        int refs = refCount.decrementAndGet();
+        if (refs == 0) {
+            pool.recycle(this);
+        } else if (refs < 0) {
+            refCount.getAndIncrement();
+            throw new IllegalStateException("Buffer was already released");
+        }
+    }
+}
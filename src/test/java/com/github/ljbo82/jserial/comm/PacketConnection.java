@@ -16,42 +16,82 @@
 package com.github.ljbo82.jserial.comm;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class PacketConnection extends Connection.Wrapper {
     // region Static scope
-    private static final int MESSAGE_MAX_LEN = 255;
+    /*pp*/ static final int MESSAGE_MAX_LEN = 255;
     // endregion
 
+    // Reused across calls: reads and writes only allocate in the methods whose contract requires it
+    private final byte[] readBuffer  = new byte[MESSAGE_MAX_LEN];
+    private final byte[] writeBuffer = new byte[MESSAGE_MAX_LEN + 1];
+
     public PacketConnection(Connection wrapped) {
         super(wrapped);
     }
 
+    /**
+     * Reads a packet.
+     *
+     * @return packet payload, or {@code null} if packet is empty or on EOS (or no data with no read timeout).
+     */
     public byte[] read() throws IOException {
-        InputStream is = getInputStream();
-        byte[] messageBuffer = new byte[MESSAGE_MAX_LEN];
+        synchronized (readBuffer) {
+            int messageLength = read(readBuffer, 0);
+            if (messageLength <= 0)
+                return null;
 
-        int messageLength = is.read();
-        if (messageLength <= 0) // EOS or no data with no read timeout
-            return null;
+            return Arrays.copyOfRange(readBuffer, 0, messageLength);
+        }
+    }
 
-        messageLength = messageLength & 0xff;
+    /**
+     * Reads a packet into given array, which must have room for {@value #MESSAGE_MAX_LEN} bytes from {@code off}.
+     *
+     * @return payload length, or -1 on EOS (or no data with no read timeout).
+     */
+    public int read(byte[] into, int off) throws IOException {
+        if (off < 0 || into.length - off < MESSAGE_MAX_LEN)
+            throw new IndexOutOfBoundsException();
 
-        int totalRead = 0;
-        int read;
-        while (totalRead < messageLength) {
-            read = is.read(messageBuffer, totalRead, messageLength - totalRead);
+        if (readFully(into, off, 1) < 0) // EOS or no data with no read timeout
+            return -1;
 
-            if (read <= 0) { // EOS or no data with no read timeout
-                return null;
+        int messageLength = into[off] & 0xff;
+        if (messageLength == 0)
+            return 0;
+
+        if (readFully(into, off, messageLength) < 0)
+            return -1;
+
+        return messageLength;
+    }
+
+    /**
+     * Reads a packet into a buffer taken from given pool (the caller owns its reference).
+     *
+     * @return the packet, or {@code null} (as {@link #read()} does) if packet is empty or on EOS (or no data with no
+     * read timeout).
+     */
+    public PacketBuffer read(PacketBuffer.Pool pool) throws IOException {
+        PacketBuffer buffer = pool.acquire();
+        try {
+            int messageLength = read(buffer.array(), 0);
+            if (messageLength > 0) {
+                buffer.setLength(messageLength);
+                PacketBuffer result = buffer;
+                buffer = null;
+                return result;
             }
 
-            totalRead += read;
+            return null;
+        } finally {
+            if (buffer != null)
+                buffer.release();
         }
-
-        return Arrays.copyOfRange(messageBuffer, 0, totalRead);
     }
 
     public void write(byte[] data, int off, int len) throws IOException {
@@ -61,23 +101,38 @@ public class PacketConnection extends Connection.Wrapper {
         if (len > MESSAGE_MAX_LEN)
             throw new IllegalArgumentException("Data length violates protocol limits");
 
-        byte[] buffer = new byte[MESSAGE_MAX_LEN + 1];
+        synchronized (writeBuffer) {
+            // Header
+            writeBuffer[0] = (byte)len;
 
-        // Header
-        buffer[0] = (byte)len;
+            // Payload
+            System.arraycopy(data, off, writeBuffer, 1, len);
 
-        // Payload
-        int i;
-        for (i = 0 ; i < len; i++) {
-            buffer[i + 1] = data[i + off];
+            writePacket(len);
         }
-
-        OutputStream os = getOutputStream();
-        os.write(buffer, 0, i + 1);
-        os.flush();
     }
 
     public void write(byte[] data) throws IOException {
         write(data, 0, data.length);
     }
+
+    /** Writes the remaining bytes of given buffer as a packet (buffer position is advanced). */
+    public void write(ByteBuffer data) throws IOException {
+        int len = data.remaining();
+        if (len > MESSAGE_MAX_LEN)
+            throw new IllegalArgumentException("Data length violates protocol limits");
+
+        synchronized (writeBuffer) {
+            writeBuffer[0] = (byte)len;
+            data.get(writeBuffer, 1, len);
+            writePacket(len);
+        }
+    }
+
+    /** Sends the packet held by writeBuffer. Caller must hold writeBuffer lock. */
+    private void writePacket(int len) throws IOException {
+        OutputStream os = getOutputStream();
+        os.write(writeBuffer, 0, len + 1);
+        os.flush();
+    }
 }
@@ -0,0 +1,638 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.comm;
+
+import com.github.ljbo82.jserial.SerialConfig;
+import com.github.ljbo82.jserial.SerialPort;
+import com.github.ljbo82.jserial.SerialPort.DataBits;
+import com.github.ljbo82.jserial.SerialPort.Parity;
+import com.github.ljbo82.jserial.SerialPort.StopBits;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serial port connection which survives port outages (e.g. a USB adapter being unplugged).
+ *
+ * <p>When the port fails, it is closed and reopened in background with jittered exponential backoff (reopen is only
+ * attempted once the port is enumerated again), restoring the last configuration. Meanwhile:</p>
+ * <ul>
+ *     <li>Reads wait for the port to come back, up to the read timeout. A read interrupted by the outage fails, and
+ *     the partially received data is lost. Asynchronous reads (which consume no data until completed) are reissued
+ *     once the port is back instead.</li>
+ *     <li>Writes are either dropped or queued for replay once the port is back, depending on the {@link WritePolicy}.
+ *     Queue is bounded: when full, the oldest writes are dropped. A write interrupted by the outage may be partially
+ *     sent before being replayed.</li>
+ * </ul>
+ */
+public class ReconnectingConnection extends Connection {
+    // region Static scope
+    private static final long INITIAL_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS     = 5000;
+
+    private static final int DEFAULT_OUTBOX_CAPACITY = 16 * 1024;
+
+    private static final int RECONNECT_POOL_SIZE = 4;
+
+    private static ScheduledExecutorService scheduler;
+    private static ExecutorService reconnectExecutor;
+
+    /** Returns the scheduler timing reconnection backoffs (it never runs blocking operations). */
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "connection-reconnect-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return scheduler;
+    }
+
+    /** Returns the small pool running reconnection attempts (which block while opening ports). */
+    private static synchronized ExecutorService getReconnectExecutor() {
+        if (reconnectExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(RECONNECT_POOL_SIZE, RECONNECT_POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, String.format("connection-reconnect-%d", counter.incrementAndGet()));
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            reconnectExecutor = executor;
+        }
+
+        return reconnectExecutor;
+    }
+
+    /** Returns the delay before given reconnection attempt (full exponential delay minus up to 50% of jitter). */
+    private static long getBackoffMillis(int attempt) {
+        long delay = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(attempt, 16));
+        return delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /** What happens to writes issued while the port is down. */
+    public enum WritePolicy {
+        /** Writes are discarded. */
+        DROP,
+
+        /** Writes are queued and replayed, in order, once the port is back. */
+        REPLAY
+    }
+
+    /** Locates and opens the port. */
+    public interface PortSource {
+        /** Checks whether the port is currently enumerated by the system. */
+        boolean isPresent(String portName) throws IOException;
+
+        SerialPort open(String portName, SerialConfig config) throws IOException;
+    }
+
+    /** Port source using native enumeration ({@link SerialPort#getPortNames()}). */
+    public static final PortSource NATIVE_PORTS = new PortSource() {
+        @Override
+        public boolean isPresent(String portName) throws IOException {
+            return Arrays.asList(SerialPort.getPortNames()).contains(portName);
+        }
+
+        @Override
+        public SerialPort open(String portName, SerialConfig config) throws IOException {
+            return new SerialPort(portName, config);
+        }
+    };
+    // endregion
+
+    private final String portName;
+    private final PortSource portSource;
+    private final WritePolicy writePolicy;
+    private final int outboxCapacity;
+
+    private final Object lock = new Object();
+    private SerialPortConnection current; // Guarded by lock (null while disconnected)
+    private SerialConfig config;          // Guarded by lock
+    private boolean reconnecting;         // Guarded by lock
+    private boolean closed;               // Guarded by lock
+    private long reconnectCount;          // Guarded by lock
+
+    private final List<Runnable> reconnectWaiters = new ArrayList<>(); // Guarded by lock
+
+    // Writes (and replay) are serialized, so replayed data is never interleaved with new writes
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ArrayDeque<byte[]> outbox = new ArrayDeque<>(); // Guarded by writeLock
+    private int outboxLen;                                      // Guarded by writeLock
+    private long droppedBytes;                                  // Guarded by writeLock
+
+    private final InputStream inputStream = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            SerialPortConnection connection = awaitConnection();
+            if (connection == null)
+                return -1;
+
+            try {
+                return checkEos(connection, connection.getInputStream().read());
+            } catch (IOException e) {
+                throw onFailure(connection, e);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            SerialPortConnection connection = awaitConnection();
+            if (connection == null)
+                return -1;
+
+            try {
+                return checkEos(connection, connection.getInputStream().read(b, off, len));
+            } catch (IOException e) {
+                throw onFailure(connection, e);
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            SerialPortConnection connection = getCurrent();
+            return connection == null ? 0 : connection.getInputStream().available();
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writeLock.lock();
+            try {
+                SerialPortConnection connection = getCurrent();
+                if (connection != null) {
+                    try {
+                        connection.getOutputStream().write(b, off, len);
+                        return;
+                    } catch (IOException e) {
+                        IOException error = onFailure(connection, e);
+                        if (writePolicy == WritePolicy.DROP)
+                            throw error;
+                    }
+                }
+
+                enqueue(b, off, len);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeLock.lock();
+            try {
+                SerialPortConnection connection = getCurrent();
+                if (connection == null)
+                    return; // Queued data is flushed when replayed
+
+                try {
+                    connection.getOutputStream().flush();
+                } catch (IOException e) {
+                    throw onFailure(connection, e);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    };
+
+    public ReconnectingConnection(String portName) throws IOException {
+        this(portName, NATIVE_PORTS, SerialPortConnection.DEFAULT_CONFIG, WritePolicy.REPLAY, DEFAULT_OUTBOX_CAPACITY);
+    }
+
+    /**
+     * Opens a connection. Initial open is not retried: it fails if the port cannot be opened.
+     *
+     * @param outboxCapacity max number of bytes queued while the port is down.
+     */
+    public ReconnectingConnection(String portName, PortSource portSource, SerialConfig config, WritePolicy writePolicy, int outboxCapacity) throws IOException {
+        if (portName == null || portSource == null || config == null || writePolicy == null)
+            throw new NullPointerException();
+
+        if (outboxCapacity < 0)
+            throw new IllegalArgumentException("Negative outbox capacity");
+
+        this.portName = portName;
+        this.portSource = portSource;
+        this.writePolicy = writePolicy;
+        this.outboxCapacity = outboxCapacity;
+        this.config = config;
+        this.current = open(config);
+    }
+
+    private SerialPortConnection open(SerialConfig config) throws IOException {
+        SerialPort port = portSource.open(portName, config);
+        try {
+            return new SerialPortConnection(port, config);
+        } catch (IOException e) {
+            port.close();
+            throw e;
+        }
+    }
+
+    private SerialPortConnection getCurrent() {
+        synchronized (lock) {
+            return current;
+        }
+    }
+
+    /**
+     * Waits for the port to be available, up to the read timeout.
+     *
+     * @return current connection, or {@code null} if this connection is closed or port is down with no read timeout.
+     * @throws SerialPort.TimeoutException if port did not come back in time.
+     */
+    private SerialPortConnection awaitConnection() throws IOException {
+        synchronized (lock) {
+            long timeoutMillis = config.getReadTimeout();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+            while (current == null && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if (timeoutMillis == 0)
+                    return null;
+
+                if (remaining <= 0)
+                    throw new SerialPort.TimeoutException();
+
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            return current;
+        }
+    }
+
+    /** Detects the port being closed under a read (reported as EOS by the port). */
+    private int checkEos(SerialPortConnection connection, int result) throws IOException {
+        if (result < 0 && !connection.isOpen())
+            throw onFailure(connection, new IOException("Port was closed"));
+
+        return result;
+    }
+
+    /** Handles a failure of given connection, starting reconnection. Returns the error to be reported. */
+    private IOException onFailure(SerialPortConnection connection, IOException error) {
+        if (error instanceof SerialPort.TimeoutException && connection.isOpen())
+            return error; // Regular timeout
+
+        synchronized (lock) {
+            if (current != connection || closed)
+                return error;
+
+            current = null;
+
+            if (!reconnecting) {
+                reconnecting = true;
+                scheduleReconnect(0);
+            }
+        }
+
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+            // Port is already broken
+        }
+
+        return error;
+    }
+
+    private void scheduleReconnect(int attempt) {
+        getScheduler().schedule(() -> getReconnectExecutor().execute(() -> reconnect(attempt)), getBackoffMillis(attempt), TimeUnit.MILLISECONDS);
+    }
+
+    /** Runs (and clears) the tasks waiting for the port to come back or for this connection to be closed. */
+    private void runReconnectWaiters() {
+        List<Runnable> waiters;
+        synchronized (lock) {
+            waiters = new ArrayList<>(reconnectWaiters);
+            reconnectWaiters.clear();
+        }
+
+        for (Runnable waiter : waiters) {
+            waiter.run();
+        }
+    }
+
+    private void reconnect(int attempt) {
+        SerialConfig config;
+        synchronized (lock) {
+            if (closed) {
+                reconnecting = false;
+                return;
+            }
+
+            config = this.config;
+        }
+
+        SerialPortConnection connection = null;
+        SerialPortConnection published = null;
+        try {
+            if (!portSource.isPresent(portName))
+                throw new IOException("Port is not present");
+
+            connection = open(config);
+
+            // Port is published only after queued writes were replayed (writes issued meanwhile keep being queued)
+            writeLock.lock();
+            try {
+                replay(connection);
+
+                synchronized (lock) {
+                    reconnecting = false;
+
+                    if (!closed) {
+                        current = connection;
+                        reconnectCount++;
+                        lock.notifyAll();
+                        published = connection;
+                        connection = null;
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            if (connection == null) {
+                applyLatestConfig(published, config);
+                runReconnectWaiters();
+                return;
+            }
+
+            connection.close(); // Closed meanwhile
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                    // Port is already broken
+                }
+            }
+
+            scheduleReconnect(attempt + 1);
+        }
+    }
+
+    /**
+     * Applies configuration changes made (through {@link #config(int, DataBits, Parity, StopBits)}) while a reopened
+     * port was not published yet, since they only updated the configuration used by later opens.
+     *
+     * @param applied configuration the port was opened with.
+     */
+    private void applyLatestConfig(SerialPortConnection connection, SerialConfig applied) {
+        while (true) {
+            SerialConfig latest;
+            synchronized (lock) {
+                latest = config;
+                if (current != connection || latest.hasSameLineSettings(applied))
+                    return;
+            }
+
+            try {
+                connection.config(latest.getBaud(), latest.getDataBits(), latest.getParity(), latest.getStopBits());
+            } catch (IOException e) {
+                onFailure(connection, e); // Reopened with latest configuration
+                return;
+            }
+
+            applied = latest;
+        }
+    }
+
+    /** Queues a write issued while the port is down. Caller must hold writeLock. */
+    private void enqueue(byte[] b, int off, int len) {
+        if (writePolicy == WritePolicy.DROP || len > outboxCapacity) {
+            droppedBytes += len;
+            return;
+        }
+
+        while (outboxLen + len > outboxCapacity) {
+            byte[] dropped = outbox.removeFirst();
+            outboxLen -= dropped.length;
+            droppedBytes += dropped.length;
+        }
+
+        outbox.addLast(Arrays.copyOfRange(b, off, off + len));
+        outboxLen += len;
+    }
+
+    /** Sends queued writes. Caller must hold writeLock. Data is dequeued only once sent. */
+    private void replay(SerialPortConnection connection) throws IOException {
+        OutputStream os = connection.getOutputStream();
+
+        byte[] data;
+        while ((data = outbox.peekFirst()) != null) {
+            os.write(data);
+            outbox.removeFirst();
+            outboxLen -= data.length;
+        }
+
+        os.flush();
+    }
+
+    /** Checks whether the port is currently up. */
+    public boolean isConnected() {
+        return getCurrent() != null;
+    }
+
+    /** Returns the number of times the port was reopened after a failure. */
+    public long getReconnectCount() {
+        synchronized (lock) {
+            return reconnectCount;
+        }
+    }
+
+    /** Returns the number of written bytes dropped while the port was down. */
+    public long getDroppedBytes() {
+        writeLock.lock();
+        try {
+            return droppedBytes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Changes port configuration (also restored when the port is reopened). */
+    public void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException {
+        SerialPortConnection connection;
+        synchronized (lock) {
+            config = new SerialConfig(baud, dataBits, parity, stopBits, config.getReadTimeout());
+            connection = current;
+        }
+
+        if (connection != null) {
+            try {
+                connection.config(baud, dataBits, parity, stopBits);
+            } catch (IOException e) {
+                throw onFailure(connection, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        synchronized (lock) {
+            return !closed;
+        }
+    }
+
+    @Override
+    protected InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    protected OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    protected int readUntil(byte delimiter, byte[] buf, int off, int maxLen) throws IOException {
+        SerialPortConnection connection = awaitConnection();
+        if (connection == null)
+            return -1;
+
+        try {
+            return checkEos(connection, connection.readUntil(delimiter, buf, off, maxLen));
+        } catch (IOException e) {
+            throw onFailure(connection, e);
+        }
+    }
+
+    @Override
+    protected int readFully(byte[] buf, int off, int len) throws IOException {
+        SerialPortConnection connection = awaitConnection();
+        if (connection == null)
+            return -1;
+
+        try {
+            return checkEos(connection, connection.readFully(buf, off, len));
+        } catch (IOException e) {
+            throw onFailure(connection, e);
+        }
+    }
+
+    /**
+     * Reads through the current port, waiting (without blocking a thread) for the port to come back while it is down.
+     * A read failed by an outage is reissued once the port is reopened.
+     */
+    @Override
+    protected CompletableFuture<Integer> readAsync(ByteBuffer dst) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        readAsync(dst, result);
+        return result;
+    }
+
+    private void readAsync(ByteBuffer dst, CompletableFuture<Integer> result) {
+        SerialPortConnection connection;
+        synchronized (lock) {
+            if (closed) {
+                result.complete(-1);
+                return;
+            }
+
+            connection = current;
+            if (connection == null) {
+                reconnectWaiters.add(() -> readAsync(dst, result));
+                return;
+            }
+        }
+
+        connection.readAsync(dst).whenComplete((read, error) -> {
+            if (error == null && (read >= 0 || connection.isOpen())) {
+                result.complete(read);
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause != null && !(cause instanceof IOException)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            onFailure(connection, cause == null ? new IOException("Port was closed") : (IOException) cause);
+            readAsync(dst, result); // Waits for the port to come back (regular timeouts are simply retried)
+        });
+    }
+
+    @Override
+    public void purge() throws IOException {
+        SerialPortConnection connection = getCurrent();
+        if (connection == null)
+            return;
+
+        try {
+            connection.purge();
+        } catch (IOException e) {
+            throw onFailure(connection, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        SerialPortConnection connection;
+        synchronized (lock) {
+            if (closed)
+                return;
+
+            closed = true;
+            connection = current;
+            current = null;
+            lock.notifyAll();
+        }
+
+        runReconnectWaiters(); // Pending asynchronous reads complete with EOS
+
+        if (connection != null)
+            connection.close();
+    }
+
+    @Override
+    public String toString() {
+        SerialPortConnection connection = getCurrent();
+        return connection == null ? String.format("%s (reconnecting)", portName) : connection.toString();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.github.ljbo82.jserial.comm;
 
+import com.github.ljbo82.jserial.SerialConfig;
 import com.github.ljbo82.jserial.SerialPort;
 import com.github.ljbo82.jserial.SerialPort.DataBits;
 import com.github.ljbo82.jserial.SerialPort.Parity;
@@ -23,33 +24,52 @@ import com.github.ljbo82.jserial.SerialPort.StopBits;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class SerialPortConnection extends Connection {
-    private static final int      DEFAULT_BAUD                = 9600;
-    private static final long     DEFAULT_READ_TIMEOUT_MILLIS = 3000;
-    private static final DataBits DEFAULT_DATA_BITS           = DataBits.DATA_BITS_8;
-    private static final Parity   DEFAULT_PARITY              = Parity.NONE;
-    private static final StopBits DEFAULT_STOP_BITS           = StopBits.STOP_BITS_1;
+    private static final long         DEFAULT_READ_TIMEOUT_MILLIS = 3000;
+    /*pp*/ static final SerialConfig DEFAULT_CONFIG              = SerialConfig.DEFAULT.withReadTimeout(DEFAULT_READ_TIMEOUT_MILLIS);
 
     private final SerialPort serialPort;
 
     public SerialPortConnection(String portName) throws IOException {
-        serialPort = new SerialPort(portName);
-        serialPort.setReadTimeout(DEFAULT_READ_TIMEOUT_MILLIS);
-        serialPort.config(DEFAULT_BAUD, DEFAULT_DATA_BITS, DEFAULT_PARITY, DEFAULT_STOP_BITS);
+        this(new SerialPort(portName, DEFAULT_CONFIG));
+    }
+
+    /** Creates a connection over an already open port (e.g. one built on a loopback transport). */
+    public SerialPortConnection(SerialPort serialPort) throws IOException {
+        this(serialPort, DEFAULT_CONFIG);
         purge();
     }
 
+    /**
+     * Creates a connection over an already open port, applying given configuration. Received data is discarded, but
+     * (unlike {@link #purge()}) no further data is waited for.
+     */
+    public SerialPortConnection(SerialPort serialPort, SerialConfig config) throws IOException {
+        this.serialPort = serialPort;
+        serialPort.config(config);
+        serialPort.purgeRX();
+    }
+
     public void config(int baud, DataBits dataBits, Parity parity, StopBits stopBits) throws IOException {
         if (dataBits == null || parity == null || stopBits == null)
             throw new NullPointerException();
 
-        if (baud != serialPort.getBaud() || dataBits != serialPort.getDataBits() || parity != serialPort.getParity() || stopBits != serialPort.getStopBits()) {
-            serialPort.config(baud, dataBits, parity, stopBits);
+        SerialConfig current = serialPort.getConfig();
+        SerialConfig config = new SerialConfig(baud, dataBits, parity, stopBits, current.getReadTimeout());
+        if (!config.hasSameLineSettings(current)) {
+            serialPort.config(config);
             purge();
         }
     }
 
+    /*pp*/ SerialConfig getConfig() {
+        return serialPort.getConfig();
+    }
+
     @Override
     public boolean isOpen() {
         return serialPort.isOpen();
@@ -65,6 +85,34 @@ public class SerialPortConnection extends Connection {
         return serialPort.getOutputStream();
     }
 
+    @Override
+    protected CompletableFuture<Integer> readAsync(ByteBuffer dst) {
+        // No thread is blocked while waiting for data
+        return serialPort.getAsyncChannel().readAsync(dst, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /** Maps a deadline-based read result to stream semantics (timeout raises an exception). */
+    private int checkTimeout(int result) throws IOException {
+        if (result != SerialPort.TIMED_OUT)
+            return result;
+
+        if (serialPort.getReadTimeout() == 0)
+            return -1; // No data with no read timeout
+
+        throw new SerialPort.TimeoutException();
+    }
+
+    @Override
+    protected int readUntil(byte delimiter, byte[] buf, int off, int maxLen) throws IOException {
+        int read = serialPort.readUntil(delimiter, buf, off, maxLen, TimeUnit.MILLISECONDS.toNanos(serialPort.getReadTimeout()));
+        return read == SerialPort.LIMIT_EXCEEDED ? LIMIT_EXCEEDED : checkTimeout(read);
+    }
+
+    @Override
+    protected int readFully(byte[] buf, int off, int len) throws IOException {
+        return checkTimeout(serialPort.readFully(buf, off, len, TimeUnit.MILLISECONDS.toNanos(serialPort.getReadTimeout())));
+    }
+
     @Override
     public void purge() throws IOException {
         try {
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2023 Leandro José Britto de Oliveira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ljbo82.jserial.comm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the inbound side of a connection (as raw chunks or decoded frames) honoring subscriber demand: data is read
+ * from the connection only while there is outstanding demand, so a slow subscriber leaves unread data in the port.
+ *
+ * <p>This is a unicast publisher: it accepts a single subscriber.</p>
+ */
+public class ConnectionPublisher<T> implements Flow.Publisher<T> {
+    // region Static scope
+    private static final int CHUNK_BUFFER_LEN = 1024;
+
+    /** Extracts frames from received data. */
+    public interface Decoder<T> {
+        /**
+         * Decodes a frame from given buffer (in read mode), consuming the frame bytes.
+         *
+         * @return decoded frame, or {@code null} if buffer does not hold a complete frame.
+         */
+        T decode(ByteBuffer buffer) throws IOException;
+    }
+
+    /** Publishes data chunks as they are received. */
+    public static ConnectionPublisher<byte[]> chunks(Connection connection) {
+        return new ConnectionPublisher<>(connection, CHUNK_BUFFER_LEN, buffer -> {
+            if (!buffer.hasRemaining())
+                return null;
+
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            return chunk;
+        });
+    }
+
+    /** Publishes messages using {@link LineConnection} framing. */
+    public static ConnectionPublisher<String> lines(Connection connection) {
+        return new ConnectionPublisher<>(connection, 2 * LineConnection.MESSAGE_MAX_LEN, buffer -> {
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                if (buffer.get(i) == LineConnection.MESSAGE_DELIMITER) {
+                    String line = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), i - buffer.position(), StandardCharsets.UTF_8);
+                    buffer.position(i + 1);
+                    return line;
+                }
+            }
+
+            return null;
+        });
+    }
+
+    /** Publishes packets using {@link PacketConnection} framing. */
+    public static ConnectionPublisher<byte[]> packets(Connection connection) {
+        return new ConnectionPublisher<>(connection, PacketConnection.MESSAGE_MAX_LEN + 1, buffer -> {
+            if (!buffer.hasRemaining())
+                return null;
+
+            int packetLen = buffer.get(buffer.position()) & 0xff;
+            if (buffer.remaining() < packetLen + 1)
+                return null;
+
+            int start = buffer.arrayOffset() + buffer.position() + 1;
+            byte[] packet = Arrays.copyOfRange(buffer.array(), start, start + packetLen);
+            buffer.position(buffer.position() + packetLen + 1);
+            return packet;
+        });
+    }
+    // endregion
+
+    private final Connection connection;
+    private final int bufferLen;
+    private final Decoder<T> decoder;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public ConnectionPublisher(Connection connection, int bufferLen, Decoder<T> decoder) {
+        if (connection == null || decoder == null)
+            throw new NullPointerException();
+
+        if (bufferLen <= 0)
+            throw new IllegalArgumentException("Invalid buffer length");
+
+        this.connection = connection;
+        this.bufferLen = bufferLen;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("Null subscriber");
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("Publisher allows a single subscriber"));
+            return;
+        }
+
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final ByteBuffer buffer = ByteBuffer.allocate(bufferLen); // Kept in write mode
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile boolean reading;
+        private volatile CompletableFuture<Integer> pendingRead;
+        private volatile Throwable readError;
+        private volatile boolean eos;
+
+        Subscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Non-positive request"));
+                return;
+            }
+
+            demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+
+            CompletableFuture<Integer> pendingRead = this.pendingRead;
+            if (pendingRead != null)
+                pendingRead.cancel(false);
+        }
+
+        private void terminate(Throwable error) {
+            done = true;
+
+            if (error == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }
+
+        private void onRead(Integer read, Throwable error) {
+            if (error != null) {
+                readError = error;
+            } else if (read < 0) {
+                eos = true;
+            }
+
+            pendingRead = null;
+            reading = false;
+            drain();
+        }
+
+        /** Emits decoded frames and issues reads while there is demand. Signals are never emitted concurrently. */
+        void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+
+            do {
+                while (!cancelled && !done && !reading) {
+                    T frame;
+                    try {
+                        buffer.flip();
+                        try {
+                            frame = demand.get() > 0 ? decoder.decode(buffer) : null;
+                        } finally {
+                            buffer.compact();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        terminate(e);
+                        break;
+                    }
+
+                    if (frame != null) {
+                        demand.decrementAndGet();
+                        subscriber.onNext(frame);
+                        continue;
+                    }
+
+                    if (readError != null) {
+                        terminate(readError);
+                        break;
+                    }
+
+                    if (eos) {
+                        terminate(null);
+                        break;
+                    }
+
+                    if (demand.get() == 0)
+                        break;
+
+                    if (!buffer.hasRemaining()) {
+                        // Frame does not fit into buffer
+                        terminate(new IOException("Message length violates protocol limits"));
+                        break;
+                    }
+
+                    reading = true;
+                    CompletableFuture<Integer> future = connection.readAsync(buffer);
+                    pendingRead = future;
+                    future.whenComplete(this::onRead);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+    }
+}